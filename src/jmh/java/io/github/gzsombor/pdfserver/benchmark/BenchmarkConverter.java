@@ -0,0 +1,46 @@
+package io.github.gzsombor.pdfserver.benchmark;
+
+import io.github.gzsombor.pdfserver.api.PdfOutput;
+import io.github.gzsombor.pdfserver.impl.PdfResponseConverter;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+import org.w3c.dom.Document;
+
+import javax.xml.transform.TransformerException;
+import java.util.Collection;
+
+/**
+ * Converter exposing the stages of the render pipeline, so they can be
+ * measured on their own. Uses the templates of the tests, with the template
+ * cache enabled, as in production.
+ */
+public class BenchmarkConverter extends PdfResponseConverter {
+
+    public BenchmarkConverter() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode("HTML");
+        resolver.setCharacterEncoding("UTF-8");
+        resolver.setCacheable(true);
+        SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+        setTemplateEngine(engine);
+    }
+
+    public String processTemplate(PdfOutput toPdf) {
+        return process(toPdf);
+    }
+
+    public Document parse(String content) {
+        return parseHtml(content);
+    }
+
+    public Document merge(Collection<? extends PdfOutput> toPdf) {
+        return processList(toPdf);
+    }
+
+    public String serialize(Document document) throws TransformerException {
+        return documentToString(document);
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.gzsombor.pdfserver.benchmark;
+
+import io.github.gzsombor.pdfserver.api.PdfOutput;
+import io.github.gzsombor.pdfserver.impl.HtmlMerger;
+import io.github.gzsombor.pdfserver.test.model.ReportSection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures merging the report sections into one document: with the template
+ * processing and the parsing of every section, and the merge of the already
+ * parsed fragments alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MergeBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int sections;
+
+    private BenchmarkConverter converter;
+
+    private List<PdfOutput> parts;
+
+    private String[] fragmentHtml;
+
+    private Document[] fragments;
+
+    @Setup
+    public void setUp() {
+        converter = new BenchmarkConverter();
+        parts = new ArrayList<>(sections);
+        fragmentHtml = new String[sections];
+        for (int i = 0; i < sections; i++) {
+            ReportSection section = new ReportSection(String.valueOf(i), "Title " + i, "Content of part " + i + ".");
+            parts.add(section);
+            fragmentHtml[i] = converter.processTemplate(section);
+        }
+    }
+
+    /**
+     * The merge moves the nodes out of the fragments, so they are parsed again
+     * before every invocation.
+     */
+    @Setup(Level.Invocation)
+    public void parseFragments() {
+        fragments = new Document[sections];
+        for (int i = 0; i < sections; i++) {
+            fragments[i] = converter.parse(fragmentHtml[i]);
+        }
+    }
+
+    @Benchmark
+    public Document processList() {
+        return converter.merge(parts);
+    }
+
+    @Benchmark
+    public Document mergeOnly() {
+        HtmlMerger merger = new HtmlMerger();
+        for (Document fragment : fragments) {
+            merger.append(fragment, "report-section");
+        }
+        return merger.getDocument();
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.gzsombor.pdfserver.benchmark;
+
+import io.github.gzsombor.pdfserver.test.model.InvoiceData;
+import io.github.gzsombor.pdfserver.test.model.InvoiceData.InvoiceItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+import javax.xml.transform.TransformerException;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the stages of rendering a single invoice: the template processing,
+ * the HTML parsing, the serialization of the parsed document, and the whole
+ * PDF generation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderPipelineBenchmark {
+
+    private BenchmarkConverter converter;
+
+    private InvoiceData invoice;
+
+    private String html;
+
+    private Document document;
+
+    @Setup
+    public void setUp() {
+        converter = new BenchmarkConverter();
+        List<InvoiceItem> items = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            items.add(new InvoiceItem("Service " + i, i, 10.0 * i));
+        }
+        invoice = new InvoiceData("INV-BENCH", LocalDate.of(2025, 1, 1), "Benchmark Ltd.", "1 Main Street", items);
+        html = converter.processTemplate(invoice);
+        document = converter.parse(html);
+    }
+
+    @Benchmark
+    public String process() {
+        return converter.processTemplate(invoice);
+    }
+
+    @Benchmark
+    public Document parseHtml() {
+        return converter.parse(html);
+    }
+
+    @Benchmark
+    public String documentToString() throws TransformerException {
+        return converter.serialize(document);
+    }
+
+    @Benchmark
+    public byte[] pdfEndToEnd() throws IOException {
+        return converter.renderToByteArray(invoice);
+    }
+}
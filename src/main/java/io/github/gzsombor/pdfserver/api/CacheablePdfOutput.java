@@ -0,0 +1,17 @@
+package io.github.gzsombor.pdfserver.api;
+
+/**
+ * Interface to mark a {@link PdfOutput}, whose generated document depends only
+ * on the template and on the data identified by the fingerprint, so the
+ * generated document can be cached and reused for the same fingerprint.
+ * 
+ * @author zsombor
+ */
+public interface CacheablePdfOutput extends PdfOutput {
+    /**
+     * @return a fingerprint of all the data used by the template, for example
+     *         a hash or a version number, or null, if the output shouldn't be
+     *         cached.
+     */
+    String getFingerprint();
+}
@@ -0,0 +1,18 @@
+package io.github.gzsombor.pdfserver.api;
+
+import java.util.Locale;
+
+/**
+ * Interface to mark a {@link PdfOutput}, which should be rendered in its own
+ * language. For a {@link MergedPdfOutput}, the locale is used by all the parts,
+ * which don't specify their own.
+ * 
+ * @author zsombor
+ */
+public interface LocalizedPdfOutput extends PdfOutput {
+    /**
+     * @return the locale of the generated document, or null, to use the
+     *         default locale.
+     */
+    Locale getLocale();
+}
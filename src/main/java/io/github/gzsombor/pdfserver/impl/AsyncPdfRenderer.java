@@ -0,0 +1,135 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.context.i18n.LocaleContext;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.github.gzsombor.pdfserver.api.PdfOutput;
+
+/**
+ * Renders PDFs on a dedicated, size limited executor, so the request threads of
+ * the servlet container are not blocked by slow layouts. A controller can
+ * return the result of {@link #renderResponse(PdfOutput)} directly, Spring MVC
+ * completes the request asynchronously, when the PDF is ready.
+ * <p>
+ * At most <code>threads</code> documents are rendered at the same time, and at
+ * most <code>queueCapacity</code> are waiting. Further requests are rejected
+ * immediately, the returned future fails with a
+ * {@link ResponseStatusException} with 503 status.
+ * 
+ * @author zsombor
+ */
+public class AsyncPdfRenderer {
+
+    private final PdfResponseConverter converter;
+
+    private final ThreadPoolExecutor executor;
+
+    public AsyncPdfRenderer(PdfResponseConverter converter, int threads, int queueCapacity) {
+        this(converter, threads, queueCapacity, new NamedThreadFactory());
+    }
+
+    /**
+     * @param converter
+     *            the converter, which renders the documents
+     * @param threads
+     *            the maximum number of documents rendered at the same time
+     * @param queueCapacity
+     *            the maximum number of documents waiting for a thread
+     * @param threadFactory
+     *            creates the render threads, for example
+     *            <code>Thread.ofVirtual().name("pdf-render-", 0).factory()</code>
+     */
+    public AsyncPdfRenderer(PdfResponseConverter converter, int threads, int queueCapacity, ThreadFactory threadFactory) {
+        if (threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("threads and queueCapacity must be positive: " + threads + ", " + queueCapacity);
+        }
+        this.converter = converter;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), threadFactory,
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Render the document asynchronously.
+     * 
+     * @param t
+     * @return the future of the generated PDF, which fails with a
+     *         {@link ResponseStatusException}, if the queue is full
+     */
+    public CompletableFuture<byte[]> render(PdfOutput t) {
+        // the locale of the request is used on the render thread too
+        final LocaleContext localeContext = LocaleContextHolder.getLocaleContext();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                LocaleContextHolder.setLocaleContext(localeContext);
+                try {
+                    return converter.renderToByteArray(t);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    LocaleContextHolder.resetLocaleContext();
+                }
+            }, executor);
+        } catch (final RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many PDFs are being rendered", e));
+        }
+    }
+
+    /**
+     * Render the document asynchronously, into a response entity with the PDF
+     * content type and length set.
+     * 
+     * @param t
+     * @return the future of the response
+     */
+    public CompletableFuture<ResponseEntity<byte[]>> renderResponse(PdfOutput t) {
+        return render(t).thenApply(content -> {
+            final HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_PDF);
+            headers.setContentLength(content.length);
+            return new ResponseEntity<>(content, headers, HttpStatus.OK);
+        });
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stop accepting new documents, the already submitted ones are still
+     * rendered.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            final Thread thread = new Thread(r, "pdf-render-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
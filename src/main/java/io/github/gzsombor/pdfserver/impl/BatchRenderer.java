@@ -0,0 +1,179 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.gzsombor.pdfserver.api.PdfOutput;
+
+/**
+ * Renders many documents in one call, without HTTP, for example the nightly
+ * invoices. The documents are rendered on the worker executor, at most
+ * <code>parallelism</code> at a time, and written into the {@link PdfSink} on
+ * the calling thread, in the order of the batch. A failing document is recorded
+ * in the {@link BatchResult}, and the batch continues with the next one.
+ * <p>
+ * The documents are rendered by the converter, so the renderer pool, the
+ * resource cache and the templates are shared with the other users of the
+ * converter.
+ *
+ * @author zsombor
+ */
+public class BatchRenderer {
+    private static final Logger LOG = LoggerFactory.getLogger(BatchRenderer.class);
+
+    private final PdfResponseConverter converter;
+
+    private final Executor executor;
+
+    private final int parallelism;
+
+    /**
+     * @param converter
+     *            renders the documents
+     * @param executor
+     *            the worker pool, or null to render on the calling thread
+     * @param parallelism
+     *            the maximum number of documents rendered, and waiting for the
+     *            sink at a time
+     */
+    public BatchRenderer(PdfResponseConverter converter, Executor executor, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.converter = converter;
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Render the documents of the stream, and close it, when the batch is
+     * finished, so the streams reading from a file or a database cursor are
+     * released.
+     *
+     * @param outputs
+     * @param sink
+     * @return the number of the generated and the failed documents
+     */
+    public BatchResult render(Stream<? extends PdfOutput> outputs, PdfSink sink) {
+        try (Stream<? extends PdfOutput> stream = outputs) {
+            final Iterable<PdfOutput> iterable = () -> stream.map(PdfOutput.class::cast).iterator();
+            return render(iterable, sink);
+        }
+    }
+
+    public BatchResult render(Iterable<? extends PdfOutput> outputs, PdfSink sink) {
+        final long start = System.nanoTime();
+        final BatchResult result = new BatchResult();
+        OrderedExecution.forEachOrdered(outputs, this::renderOne, executor, parallelism, (PdfOutput output, Outcome outcome) -> {
+            if (outcome.failure != null) {
+                result.failed(output, outcome.failure);
+                return;
+            }
+            try {
+                sink.accept(output, outcome.content);
+                result.succeeded(outcome.content.length);
+            } catch (final Exception e) {
+                result.failed(output, e);
+            }
+        });
+        result.elapsed = Duration.ofNanos(System.nanoTime() - start);
+        LOG.info("Batch finished: {} documents, {} failed, {} ms, {} documents/s", result.getSucceeded(), result.getFailed(),
+                result.elapsed.toMillis(), String.format("%.1f", result.getThroughput()));
+        return result;
+    }
+
+    private Outcome renderOne(PdfOutput output) {
+        try {
+            return new Outcome(converter.renderToByteArray(output), null);
+        } catch (final Exception e) {
+            return new Outcome(null, e);
+        }
+    }
+
+    private static final class Outcome {
+        private final byte[] content;
+        private final Exception failure;
+
+        Outcome(byte[] content, Exception failure) {
+            this.content = content;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * The number of the generated and the failed documents of a batch, and its
+     * throughput.
+     */
+    public static final class BatchResult {
+        private int succeeded;
+        private long bytes;
+        private final List<Failure> failures = new ArrayList<>();
+        private Duration elapsed = Duration.ZERO;
+
+        private void succeeded(int size) {
+            succeeded++;
+            bytes += size;
+        }
+
+        private void failed(PdfOutput output, Exception e) {
+            LOG.warn("Unable to render " + output.getOutputName() + " : " + e.getMessage(), e);
+            failures.add(new Failure(output, e));
+        }
+
+        public int getSucceeded() {
+            return succeeded;
+        }
+
+        public int getFailed() {
+            return failures.size();
+        }
+
+        public List<Failure> getFailures() {
+            return Collections.unmodifiableList(failures);
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public Duration getElapsed() {
+            return elapsed;
+        }
+
+        /**
+         * @return the generated documents per second
+         */
+        public double getThroughput() {
+            final long nanos = elapsed.toNanos();
+            return nanos > 0 ? succeeded * 1e9 / nanos : 0;
+        }
+    }
+
+    /**
+     * A document, which couldn't be generated or written into the sink.
+     */
+    public static final class Failure {
+        private final PdfOutput output;
+        private final Exception exception;
+
+        Failure(PdfOutput output, Exception exception) {
+            this.output = output;
+            this.exception = exception;
+        }
+
+        public PdfOutput getOutput() {
+            return output;
+        }
+
+        public Exception getException() {
+            return exception;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xhtmlrenderer.extend.FSImage;
+import org.xhtmlrenderer.pdf.ITextFSImage;
+import org.xhtmlrenderer.pdf.ITextOutputDevice;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+import org.xhtmlrenderer.pdf.ITextUserAgent;
+import org.xhtmlrenderer.resource.CSSResource;
+import org.xhtmlrenderer.resource.ImageResource;
+
+/**
+ * User agent, which loads the stylesheets, the binary resources (like fonts)
+ * and the images through a {@link ResourceCache}, which can be shared between
+ * renderers, so they are fetched and decoded only once.
+ * 
+ * @author zsombor
+ */
+public class CachingUserAgent extends ITextUserAgent {
+    private static final Logger LOG = LoggerFactory.getLogger(CachingUserAgent.class);
+
+    private final ResourceCache resourceCache;
+
+    public CachingUserAgent(ITextOutputDevice outputDevice, int dotsPerPixel, ResourceCache resourceCache) {
+        super(outputDevice, dotsPerPixel);
+        this.resourceCache = resourceCache;
+    }
+
+    /**
+     * Create a renderer with the default resolution, which uses the given
+     * cache for loading the resources.
+     * 
+     * @param resourceCache
+     * @return the new renderer
+     */
+    public static ITextRenderer createRenderer(ResourceCache resourceCache) {
+        final ITextOutputDevice outputDevice = new ITextOutputDevice(ITextRenderer.DEFAULT_DOTS_PER_POINT);
+        final CachingUserAgent userAgent = new CachingUserAgent(outputDevice, ITextRenderer.DEFAULT_DOTS_PER_PIXEL, resourceCache);
+        return new ITextRenderer(outputDevice, userAgent);
+    }
+
+    @Override
+    public CSSResource getCSSResource(String uri) {
+        final byte[] content = getBytes(uri);
+        return content != null ? new CSSResource(new ByteArrayInputStream(content)) : super.getCSSResource(uri);
+    }
+
+    @Override
+    public byte[] getBinaryResource(String uri) {
+        final byte[] content = getBytes(uri);
+        return content != null ? content : super.getBinaryResource(uri);
+    }
+
+    @Override
+    public ImageResource getImageResource(String uri) {
+        final String resolved = resolveURI(uri);
+        if (resolved == null || resolved.startsWith("data:")) {
+            return super.getImageResource(uri);
+        }
+        ImageResource image = resourceCache.getImage(resolved);
+        if (image == null) {
+            image = super.getImageResource(uri);
+            if (image.getImage() == null) {
+                return image;
+            }
+            resourceCache.putImage(resolved, image);
+        }
+        return new ImageResource(image.getImageUri(), copy(image.getImage()));
+    }
+
+    private byte[] getBytes(String uri) {
+        final String resolved = resolveURI(uri);
+        if (resolved == null) {
+            return null;
+        }
+        byte[] content = resourceCache.getBytes(resolved);
+        if (content == null) {
+            try (InputStream in = resolveAndOpenStream(resolved)) {
+                if (in == null) {
+                    return null;
+                }
+                content = in.readAllBytes();
+            } catch (IOException e) {
+                LOG.warn("Unable to read {} : {}", resolved, e.getMessage());
+                return null;
+            }
+            resourceCache.putBytes(resolved, content);
+        }
+        return content;
+    }
+
+    private static FSImage copy(FSImage image) {
+        // the renderer may scale the image, so every document gets its own copy
+        return image instanceof ITextFSImage ? (FSImage) ((ITextFSImage) image).clone() : image;
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Streaming replacement for simple, character based content formatters: every
+ * character written is replaced by the result of the mapping function, for
+ * example:
+ * 
+ * <pre>
+ * converter.setContentFilter(writer -&gt; new CharacterMappingWriter(writer, c -&gt; c == 'ő' ? 'ö' : c));
+ * </pre>
+ * 
+ * @author zsombor
+ */
+public class CharacterMappingWriter extends FilterWriter {
+
+    private final IntUnaryOperator mapping;
+
+    private final char[] chunk = new char[1024];
+
+    public CharacterMappingWriter(Writer out, IntUnaryOperator mapping) {
+        super(out);
+        this.mapping = mapping;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        out.write(mapping.applyAsInt(c));
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        for (int start = 0; start < len; start += chunk.length) {
+            final int length = Math.min(chunk.length, len - start);
+            for (int i = 0; i < length; i++) {
+                chunk[i] = (char) mapping.applyAsInt(cbuf[off + start + i]);
+            }
+            out.write(chunk, 0, length);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        for (int start = 0; start < len; start += chunk.length) {
+            final int length = Math.min(chunk.length, len - start);
+            for (int i = 0; i < length; i++) {
+                chunk[i] = (char) mapping.applyAsInt(str.charAt(off + start + i));
+            }
+            out.write(chunk, 0, length);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Keeps a limited number of direct {@link ByteBuffer} instances of the same
+ * size, so the output buffers of the generated documents are allocated outside
+ * of the heap, and reused between the requests.
+ *
+ * @author zsombor
+ */
+public class DirectBufferPool {
+
+    private final int bufferSize;
+
+    private final BlockingQueue<ByteBuffer> idle;
+
+    public DirectBufferPool(int bufferSize, int maxIdle) {
+        if (bufferSize < 1 || maxIdle < 1) {
+            throw new IllegalArgumentException("bufferSize and maxIdle must be positive: " + bufferSize + ", " + maxIdle);
+        }
+        this.bufferSize = bufferSize;
+        this.idle = new ArrayBlockingQueue<>(maxIdle);
+    }
+
+    public ByteBuffer acquire() {
+        final ByteBuffer buffer = idle.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    public void release(ByteBuffer buffer) {
+        buffer.clear();
+        idle.offer(buffer);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+}
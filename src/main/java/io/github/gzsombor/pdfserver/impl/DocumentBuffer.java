@@ -0,0 +1,22 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.io.CharArrayReader;
+import java.io.CharArrayWriter;
+import java.io.Reader;
+
+/**
+ * Character buffer for the rendered template, which can be read back by the
+ * parser without copying the content into a {@link String} first.
+ * 
+ * @author zsombor
+ */
+class DocumentBuffer extends CharArrayWriter {
+
+    DocumentBuffer() {
+        super(8192);
+    }
+
+    Reader toReader() {
+        return new CharArrayReader(buf, 0, count);
+    }
+}
@@ -0,0 +1,102 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.thymeleaf.dialect.AbstractDialect;
+import org.thymeleaf.dialect.IPostProcessorDialect;
+import org.thymeleaf.postprocessor.IPostProcessor;
+import org.thymeleaf.postprocessor.PostProcessor;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.w3c.dom.Document;
+
+/**
+ * Dialect, which lets the converters build the DOM of a rendered template
+ * directly from the events of the Thymeleaf template model, instead of
+ * writing the HTML into a buffer, and parsing it again. It has to be added to
+ * the template engine, and enabled on the converter with
+ * {@link ThymeleafMessageConverter#setDirectDom(boolean)}:
+ *
+ * <pre>
+ * templateEngine.addDialect(new DomBuildingDialect());
+ * converter.setDirectDom(true);
+ * </pre>
+ *
+ * The templates, which are processed by the other views of the application,
+ * are written to their writers unchanged.
+ *
+ * @author zsombor
+ */
+public class DomBuildingDialect extends AbstractDialect implements IPostProcessorDialect {
+
+    /**
+     * The document being built on the current thread, it's set only while a
+     * converter processes a template into a DOM.
+     */
+    private static final ThreadLocal<DomBuildingHandler.Target> TARGET = new ThreadLocal<>();
+
+    public DomBuildingDialect() {
+        super("pdfserver-dom");
+    }
+
+    @Override
+    public int getDialectPostProcessorPrecedence() {
+        // after the post processors of the other dialects
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public Set<IPostProcessor> getPostProcessors() {
+        return Collections.singleton(new PostProcessor(TemplateMode.HTML, DomBuildingHandler.class, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Process the template into a DOM on the current thread.
+     *
+     * @param template
+     *            processes the template, with a writer, which receives
+     *            nothing
+     * @param templateName
+     *            the name of the template, used in the error messages
+     * @return the document
+     * @throws IllegalStateException
+     *             if the dialect is not added to the template engine
+     */
+    static Document build(Runnable template, String templateName) {
+        final DomBuildingHandler.Target target = new DomBuildingHandler.Target();
+        final DomBuildingHandler.Target previous = TARGET.get();
+        TARGET.set(target);
+        try {
+            template.run();
+        } finally {
+            if (previous != null) {
+                TARGET.set(previous);
+            } else {
+                TARGET.remove();
+            }
+        }
+        if (!target.isUsed()) {
+            throw new IllegalStateException("The DomBuildingDialect is not added to the template engine, unable to build " + templateName);
+        }
+        final Document document = target.getDocument();
+        if (document.getDocumentElement() == null) {
+            throw new PdfRenderException(templateName + " has no root element");
+        }
+        // the texts are split at the expressions, the parser would merge them
+        document.normalize();
+        return document;
+    }
+
+    /**
+     * @return the document, which should be built by the handler created on
+     *         the current thread, or null, if the template is written
+     */
+    static DomBuildingHandler.Target claimTarget() {
+        final DomBuildingHandler.Target target = TARGET.get();
+        if (target == null || target.isUsed()) {
+            return null;
+        }
+        target.use();
+        return target;
+    }
+}
@@ -0,0 +1,251 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.thymeleaf.context.ITemplateContext;
+import org.thymeleaf.engine.AbstractTemplateHandler;
+import org.thymeleaf.model.IAttribute;
+import org.thymeleaf.model.ICDATASection;
+import org.thymeleaf.model.ICloseElementTag;
+import org.thymeleaf.model.IComment;
+import org.thymeleaf.model.IDocType;
+import org.thymeleaf.model.IOpenElementTag;
+import org.thymeleaf.model.IProcessableElementTag;
+import org.thymeleaf.model.IProcessingInstruction;
+import org.thymeleaf.model.IStandaloneElementTag;
+import org.thymeleaf.model.IText;
+import org.thymeleaf.model.IXMLDeclaration;
+import org.unbescape.html.HtmlEscape;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Post processor of the {@link DomBuildingDialect}, which builds a namespace
+ * aware DOM from the processed template, the same as the parser would build
+ * from the written HTML. The texts and the attribute values are unescaped,
+ * the document type and the XML declaration are dropped.
+ * <p>
+ * If the template is not processed into a DOM, the events are passed to the
+ * next handler, which writes them.
+ *
+ * @author zsombor
+ */
+public class DomBuildingHandler extends AbstractTemplateHandler {
+
+    private static final DOMImplementation DOM_IMPLEMENTATION = createDomImplementation();
+
+    private Target target;
+    private Node current;
+    private final Deque<Map<String, String>> namespaces = new ArrayDeque<>();
+
+    @Override
+    public void setContext(ITemplateContext context) {
+        super.setContext(context);
+        target = DomBuildingDialect.claimTarget();
+        if (target != null) {
+            current = target.getDocument();
+            namespaces.push(Map.of(XMLConstants.XML_NS_PREFIX, XMLConstants.XML_NS_URI));
+        }
+    }
+
+    @Override
+    public void handleXMLDeclaration(IXMLDeclaration xmlDeclaration) {
+        if (target == null) {
+            super.handleXMLDeclaration(xmlDeclaration);
+        }
+    }
+
+    @Override
+    public void handleDocType(IDocType docType) {
+        if (target == null) {
+            super.handleDocType(docType);
+        }
+    }
+
+    @Override
+    public void handleCDATASection(ICDATASection cdataSection) {
+        if (target == null) {
+            super.handleCDATASection(cdataSection);
+            return;
+        }
+        append(target.getDocument().createCDATASection(cdataSection.getContent()));
+    }
+
+    @Override
+    public void handleComment(IComment comment) {
+        if (target == null) {
+            super.handleComment(comment);
+            return;
+        }
+        append(target.getDocument().createComment(comment.getContent()));
+    }
+
+    @Override
+    public void handleText(IText text) {
+        if (target == null) {
+            super.handleText(text);
+            return;
+        }
+        final String content = HtmlEscape.unescapeHtml(text.getText());
+        if (current == target.getDocument()) {
+            // only whitespace is allowed around the root element
+            if (!content.isBlank()) {
+                throw new PdfRenderException("Text outside of the root element: " + content.strip());
+            }
+            return;
+        }
+        if (!content.isEmpty()) {
+            current.appendChild(target.getDocument().createTextNode(content));
+        }
+    }
+
+    @Override
+    public void handleStandaloneElement(IStandaloneElementTag standaloneElementTag) {
+        if (target == null) {
+            super.handleStandaloneElement(standaloneElementTag);
+            return;
+        }
+        append(createElement(standaloneElementTag));
+        namespaces.pop();
+    }
+
+    @Override
+    public void handleOpenElement(IOpenElementTag openElementTag) {
+        if (target == null) {
+            super.handleOpenElement(openElementTag);
+            return;
+        }
+        final Element element = createElement(openElementTag);
+        append(element);
+        current = element;
+    }
+
+    @Override
+    public void handleCloseElement(ICloseElementTag closeElementTag) {
+        if (target == null) {
+            super.handleCloseElement(closeElementTag);
+            return;
+        }
+        if (closeElementTag.isUnmatched() || current == target.getDocument()) {
+            return;
+        }
+        current = current.getParentNode();
+        namespaces.pop();
+    }
+
+    @Override
+    public void handleProcessingInstruction(IProcessingInstruction processingInstruction) {
+        if (target == null) {
+            super.handleProcessingInstruction(processingInstruction);
+            return;
+        }
+        append(target.getDocument().createProcessingInstruction(processingInstruction.getTarget(), processingInstruction.getContent()));
+    }
+
+    private void append(Node node) {
+        try {
+            current.appendChild(node);
+        } catch (final DOMException e) {
+            throw new PdfRenderException("Unable to build the document: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Create the element in its namespace, and push the namespaces declared on
+     * it.
+     */
+    private Element createElement(IProcessableElementTag tag) {
+        final IAttribute[] attributes = tag.getAllAttributes();
+        Map<String, String> scope = namespaces.peek();
+        for (IAttribute attribute : attributes) {
+            final String name = attribute.getAttributeCompleteName();
+            if (name.equals(XMLConstants.XMLNS_ATTRIBUTE) || name.startsWith(XMLConstants.XMLNS_ATTRIBUTE + ':')) {
+                if (scope == namespaces.peek()) {
+                    scope = new HashMap<>(scope);
+                }
+                final int colon = name.indexOf(':');
+                scope.put(colon < 0 ? XMLConstants.DEFAULT_NS_PREFIX : name.substring(colon + 1), value(attribute));
+            }
+        }
+        namespaces.push(scope);
+        final Document document = target.getDocument();
+        try {
+            final String elementName = tag.getElementCompleteName();
+            final Element element = document.createElementNS(namespaceOf(scope, elementName, true), elementName);
+            for (IAttribute attribute : attributes) {
+                final String name = attribute.getAttributeCompleteName();
+                if (name.equals(XMLConstants.XMLNS_ATTRIBUTE) || name.startsWith(XMLConstants.XMLNS_ATTRIBUTE + ':')) {
+                    element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, name, value(attribute));
+                } else {
+                    element.setAttributeNS(namespaceOf(scope, name, false), name, value(attribute));
+                }
+            }
+            return element;
+        } catch (final DOMException e) {
+            throw new PdfRenderException("Unable to build the element " + tag.getElementCompleteName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String namespaceOf(Map<String, String> scope, String name, boolean element) {
+        final int colon = name.indexOf(':');
+        if (colon < 0) {
+            // the unprefixed attributes have no namespace
+            return element ? emptyToNull(scope.get(XMLConstants.DEFAULT_NS_PREFIX)) : null;
+        }
+        final String namespace = scope.get(name.substring(0, colon));
+        if (namespace == null) {
+            throw new PdfRenderException("The prefix of " + name + " is not bound");
+        }
+        return namespace;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private static String value(IAttribute attribute) {
+        final String value = attribute.getValue();
+        return value != null ? HtmlEscape.unescapeHtml(value) : "";
+    }
+
+    private static DOMImplementation createDomImplementation() {
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        try {
+            return factory.newDocumentBuilder().getDOMImplementation();
+        } catch (final ParserConfigurationException e) {
+            throw new IllegalStateException("Unable to create DOM builder: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The document built on a thread, claimed by the first handler created
+     * there.
+     */
+    static final class Target {
+        private final Document document = DOM_IMPLEMENTATION.createDocument(null, null, null);
+        private boolean used;
+
+        Document getDocument() {
+            return document;
+        }
+
+        boolean isUsed() {
+            return used;
+        }
+
+        void use() {
+            used = true;
+        }
+    }
+}
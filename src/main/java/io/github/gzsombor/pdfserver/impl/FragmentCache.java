@@ -0,0 +1,156 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.w3c.dom.Document;
+
+/**
+ * Cache for the fragments of the merged documents, which are the same between
+ * requests, like the cover page, or the legal boilerplate. The fragments are
+ * keyed by their template name and fingerprint, so only the
+ * {@link io.github.gzsombor.pdfserver.api.CacheablePdfOutput} parts are
+ * cached. It keeps the parsed DOM of the fragments, and for the
+ * {@link MergeStrategy#CONCATENATE} strategy the rendered pages of the parts.
+ * <p>
+ * The merge moves the nodes out of the fragments, so the cached documents are
+ * never handed out, only their copies.
+ *
+ * @author zsombor
+ */
+public class FragmentCache {
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, Object> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxEntries
+     *            the maximum number of the cached fragments
+     */
+    public FragmentCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, Object>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                return size() > FragmentCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param key
+     * @return a copy of the cached document, or null, if it's not cached.
+     */
+    public Document getDocument(String key) {
+        final Object value = get(key + "#dom");
+        return value instanceof Document ? copy((Document) value) : null;
+    }
+
+    /**
+     * Store a copy of the document, so the original can be merged into an
+     * other document.
+     *
+     * @param key
+     * @param document
+     */
+    public void putDocument(String key, Document document) {
+        put(key + "#dom", copy(document));
+    }
+
+    /**
+     * @param key
+     * @return the rendered pages of the fragment, or null, if it's not cached.
+     */
+    public Pages getPages(String key) {
+        final Object value = get(key + "#pdf");
+        return value instanceof Pages ? (Pages) value : null;
+    }
+
+    /**
+     * Store the rendered pages of the fragment.
+     *
+     * @param key
+     * @param content
+     *            the PDF of the fragment
+     * @param firstPageNo
+     *            the number of the first page in the PDF
+     * @param pageCount
+     */
+    public void putPages(String key, byte[] content, int firstPageNo, int pageCount) {
+        put(key + "#pdf", new Pages(content, firstPageNo, pageCount));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    private synchronized Object get(String key) {
+        final Object value = entries.get(key);
+        if (value == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return value;
+    }
+
+    private synchronized void put(String key, Object value) {
+        entries.put(key, value);
+    }
+
+    private static Document copy(Document document) {
+        // even reading a DOM is not thread safe, the cached documents are
+        // copied one at a time
+        synchronized (document) {
+            return (Document) document.cloneNode(true);
+        }
+    }
+
+    /**
+     * The PDF of a fragment, rendered for the given first page number.
+     */
+    public static final class Pages {
+        private final byte[] content;
+        private final int firstPageNo;
+        private final int pageCount;
+
+        Pages(byte[] content, int firstPageNo, int pageCount) {
+            this.content = content;
+            this.firstPageNo = firstPageNo;
+            this.pageCount = pageCount;
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+
+        public int getFirstPageNo() {
+            return firstPageNo;
+        }
+
+        public int getPageCount() {
+            return pageCount;
+        }
+    }
+}
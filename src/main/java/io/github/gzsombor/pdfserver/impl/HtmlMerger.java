@@ -0,0 +1,77 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Merges the body of HTML documents into the first one. The body of the first
+ * document is looked up only once, and the content of the following fragments
+ * is moved, not copied into it, so merging takes linear time in the total size
+ * of the fragments. The appended fragments are emptied in the process.
+ * 
+ * @author zsombor
+ */
+public class HtmlMerger {
+
+    private Document document;
+
+    private Node documentBody;
+
+    private int fragmentCount;
+
+    /**
+     * Append the body of the fragment to the merged document, or if this is
+     * the first fragment, use it as the merged document.
+     * 
+     * @param fragment
+     * @param templateName
+     *            the name of the template, used in the error messages
+     */
+    public void append(Document fragment, String templateName) {
+        fragmentCount++;
+        if (document == null) {
+            document = fragment;
+            return;
+        }
+        if (documentBody == null) {
+            documentBody = findBody(document);
+            if (documentBody == null) {
+                throw new IllegalArgumentException("Unable to find 'body' element in : " + document.getDocumentURI());
+            }
+        }
+        final Node newBody = findBody(fragment);
+        if (newBody == null) {
+            throw new IllegalArgumentException("Unable to find 'body' element in template: " + templateName);
+        }
+        Node child;
+        while ((child = newBody.getFirstChild()) != null) {
+            Node toAppend = document.adoptNode(child);
+            if (toAppend == null) {
+                // the DOM implementation can't move nodes between these documents
+                newBody.removeChild(child);
+                toAppend = document.importNode(child, true);
+            }
+            documentBody.appendChild(toAppend);
+        }
+    }
+
+    /**
+     * @return the merged document, or null, if nothing was appended.
+     */
+    public Document getDocument() {
+        return document;
+    }
+
+    public int getFragmentCount() {
+        return fragmentCount;
+    }
+
+    private static Node findBody(Document document) {
+        NodeList bodies = document.getElementsByTagName("body");
+        if (bodies.getLength() == 0) {
+            bodies = document.getElementsByTagNameNS("*", "body");
+        }
+        return bodies.getLength() > 0 ? bodies.item(0) : null;
+    }
+}
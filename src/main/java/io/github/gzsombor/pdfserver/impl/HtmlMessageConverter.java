@@ -1,7 +1,10 @@
 package io.github.gzsombor.pdfserver.impl;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 
 import javax.xml.transform.TransformerException;
@@ -26,29 +29,28 @@ public class HtmlMessageConverter extends ThymeleafMessageConverter {
 
     @Override
     protected void writeInternal(PdfOutput t, HttpOutputMessage outputMessage) throws IOException {
-        LOG.info("rendering content  : {}", t);
+        LOG.debug("rendering {}", t.getOutputName());
         if (t instanceof MergedPdfOutput) {
             MergedPdfOutput merged = (MergedPdfOutput) t;
             Collection<? extends PdfOutput> parts = merged.getIndividualPdfs();
-            Document document = processList(parts);
+            Document document = processList(parts, getContextFactory().createSharedContext(merged));
 
+            final Writer w = openWriter(outputMessage);
             try {
-                String content = documentToString(document);
-                writeAsHtml(outputMessage, content);
+                writeDocument(document, w);
             } catch (TransformerException e) {
                 throw new IOException("Error transforming document: " + e.getMessage(), e);
             }
+            w.flush();
         } else {
-            String content = process(t);
-
-            writeAsHtml(outputMessage, content);
+            final Writer w = openWriter(outputMessage);
+            process(t, w);
+            w.flush();
         }
     }
 
-    private void writeAsHtml(HttpOutputMessage outputMessage, final String content) throws IOException {
+    private Writer openWriter(HttpOutputMessage outputMessage) throws IOException {
         outputMessage.getHeaders().setContentType(MediaType.TEXT_HTML);
-        final OutputStreamWriter w = new OutputStreamWriter(outputMessage.getBody(), "UTF-8");
-        w.write(content);
-        w.flush();
+        return new BufferedWriter(new OutputStreamWriter(outputMessage.getBody(), StandardCharsets.UTF_8));
     }
 }
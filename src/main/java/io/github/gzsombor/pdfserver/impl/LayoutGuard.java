@@ -0,0 +1,70 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import org.w3c.dom.Element;
+import org.xhtmlrenderer.extend.ReplacedElement;
+import org.xhtmlrenderer.extend.ReplacedElementFactory;
+import org.xhtmlrenderer.extend.UserAgentCallback;
+import org.xhtmlrenderer.layout.Layer;
+import org.xhtmlrenderer.layout.LayoutContext;
+import org.xhtmlrenderer.layout.SharedContext;
+import org.xhtmlrenderer.render.BlockBox;
+import org.xhtmlrenderer.simple.extend.FormSubmissionListener;
+
+/**
+ * Checks the {@link RenderLimits} during the layout. Flying Saucer has no
+ * callback for the progress of the layout, but it asks the replaced element
+ * factory for every block box, so this factory checks the page count and the
+ * render time, before delegating to the original factory.
+ * 
+ * @author zsombor
+ */
+class LayoutGuard implements ReplacedElementFactory {
+
+    private final ReplacedElementFactory delegate;
+    private final RenderLimits limits;
+    private final long startNanos;
+    private final String templateName;
+
+    private LayoutGuard(ReplacedElementFactory delegate, RenderLimits limits, long startNanos, String templateName) {
+        this.delegate = delegate;
+        this.limits = limits;
+        this.startNanos = startNanos;
+        this.templateName = templateName;
+    }
+
+    /**
+     * Install the guard in the shared context of a renderer.
+     * 
+     * @return the original factory, which should be restored after the layout
+     */
+    static ReplacedElementFactory install(SharedContext sharedContext, RenderLimits limits, long startNanos, String templateName) {
+        final ReplacedElementFactory original = sharedContext.getReplacedElementFactory();
+        sharedContext.setReplacedElementFactory(new LayoutGuard(original, limits, startNanos, templateName));
+        return original;
+    }
+
+    @Override
+    public ReplacedElement createReplacedElement(LayoutContext c, BlockBox box, UserAgentCallback uac, int cssWidth, int cssHeight) {
+        final Layer rootLayer = c.getRootLayer();
+        if (rootLayer != null) {
+            limits.checkPages(rootLayer.getPages().size(), templateName);
+        }
+        limits.checkTime(startNanos, templateName);
+        return delegate.createReplacedElement(c, box, uac, cssWidth, cssHeight);
+    }
+
+    @Override
+    public void reset() {
+        delegate.reset();
+    }
+
+    @Override
+    public void remove(Element e) {
+        delegate.remove(e);
+    }
+
+    @Override
+    public void setFormSubmissionListener(FormSubmissionListener listener) {
+        delegate.setFormSubmissionListener(listener);
+    }
+}
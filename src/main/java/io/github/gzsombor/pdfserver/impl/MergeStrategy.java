@@ -0,0 +1,21 @@
+package io.github.gzsombor.pdfserver.impl;
+
+/**
+ * How the parts of a {@link io.github.gzsombor.pdfserver.api.MergedPdfOutput}
+ * are combined into one PDF.
+ * 
+ * @author zsombor
+ */
+public enum MergeStrategy {
+    /**
+     * The body of every part is merged into one HTML document, which is laid
+     * out as one document.
+     */
+    DOCUMENT,
+    /**
+     * Every part is laid out, and rendered as a separate PDF, concurrently if
+     * a render executor is set, and their pages are copied into the response
+     * in order. Only a few parts are kept in memory at a time.
+     */
+    CONCATENATE
+}
@@ -0,0 +1,62 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Records the render metrics into a Micrometer registry:
+ * <ul>
+ * <li><code>pdfserver.render</code> timer, tagged by <code>stage</code> and
+ * <code>template</code>,</li>
+ * <li><code>pdfserver.output.size</code> in bytes,
+ * <code>pdfserver.pages</code> and <code>pdfserver.fragments</code>
+ * distribution summaries, tagged by <code>template</code>.</li>
+ * </ul>
+ * Micrometer is an optional dependency, it has to be added to the application
+ * to use this class.
+ * 
+ * @author zsombor
+ */
+public class MicrometerRenderMetrics implements RenderMetrics {
+
+    private final MeterRegistry registry;
+
+    public MicrometerRenderMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void recordDuration(Stage stage, String templateName, long nanos) {
+        Timer.builder("pdfserver.render")
+                .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                .tag("template", templateName)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordOutputSize(String templateName, long bytes) {
+        summary("pdfserver.output.size", "bytes", templateName).record(bytes);
+    }
+
+    @Override
+    public void recordPageCount(String templateName, int pages) {
+        summary("pdfserver.pages", "pages", templateName).record(pages);
+    }
+
+    @Override
+    public void recordFragmentCount(String templateName, int fragments) {
+        summary("pdfserver.fragments", "fragments", templateName).record(fragments);
+    }
+
+    private DistributionSummary summary(String name, String baseUnit, String templateName) {
+        return DistributionSummary.builder(name)
+                .baseUnit(baseUnit)
+                .tag("template", templateName)
+                .register(registry);
+    }
+}
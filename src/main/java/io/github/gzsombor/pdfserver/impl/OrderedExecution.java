@@ -0,0 +1,112 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Runs a task for every item of a collection on an {@link Executor}, keeping at
+ * most a given number of tasks in flight, and hands the results over to a
+ * consumer on the calling thread in the original order of the items.
+ * 
+ * @author zsombor
+ */
+final class OrderedExecution {
+
+    @FunctionalInterface
+    interface ResultConsumer<T, R, E extends Exception> {
+        void accept(T item, R result) throws E;
+    }
+
+    private OrderedExecution() {
+    }
+
+    /**
+     * @param items
+     *            the items to process
+     * @param task
+     *            the task to execute for each item
+     * @param executor
+     *            the executor to run the tasks on, if null, everything is
+     *            executed on the calling thread
+     * @param parallelism
+     *            the maximum number of tasks submitted, but not yet consumed
+     * @param consumer
+     *            receives the results, in the order of the items
+     */
+    static <T, R, E extends Exception> void forEachOrdered(Iterable<? extends T> items, Function<? super T, ? extends R> task, Executor executor,
+            int parallelism, ResultConsumer<? super T, ? super R, E> consumer) throws E {
+        if (executor == null || parallelism <= 1) {
+            for (T item : items) {
+                consumer.accept(item, task.apply(item));
+            }
+            return;
+        }
+        forEachOrderedAsync(items, item -> CompletableFuture.supplyAsync(() -> task.apply(item), executor), parallelism, consumer);
+    }
+
+    /**
+     * Same as
+     * {@link #forEachOrdered(Iterable, Function, Executor, int, ResultConsumer)}
+     * , but the tasks are started by the submitter, in the order of the items,
+     * on the calling thread, so the submitter can chain them to the previously
+     * submitted ones.
+     * 
+     * @param items
+     *            the items to process
+     * @param submitter
+     *            starts the processing of an item
+     * @param parallelism
+     *            the maximum number of tasks submitted, but not yet consumed
+     * @param consumer
+     *            receives the results, in the order of the items
+     */
+    static <T, R, E extends Exception> void forEachOrderedAsync(Iterable<? extends T> items, Function<? super T, CompletableFuture<R>> submitter,
+            int parallelism, ResultConsumer<? super T, ? super R, E> consumer) throws E {
+        final Deque<Pending<T, R>> inFlight = new ArrayDeque<>(parallelism);
+        final Iterator<? extends T> iterator = items.iterator();
+        try {
+            while (iterator.hasNext() || !inFlight.isEmpty()) {
+                while (iterator.hasNext() && inFlight.size() < Math.max(parallelism, 1)) {
+                    final T item = iterator.next();
+                    inFlight.add(new Pending<>(item, submitter.apply(item)));
+                }
+                final Pending<T, R> next = inFlight.poll();
+                consumer.accept(next.item, join(next.result));
+            }
+        } finally {
+            for (Pending<T, R> pending : inFlight) {
+                pending.result.cancel(false);
+            }
+        }
+    }
+
+    static <R> R join(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private static final class Pending<T, R> {
+        private final T item;
+        private final CompletableFuture<R> result;
+
+        Pending(T item, CompletableFuture<R> result) {
+            this.item = item;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.context.i18n.LocaleContext;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.context.IContext;
+
+import io.github.gzsombor.pdfserver.api.LocalizedPdfOutput;
+import io.github.gzsombor.pdfserver.api.MergedPdfOutput;
+import io.github.gzsombor.pdfserver.api.PdfContextConfigurer;
+import io.github.gzsombor.pdfserver.api.PdfOutput;
+
+/**
+ * Creates the Thymeleaf contexts for the templates. The variables are kept in
+ * two layers: the shared, read-only layer is created once for a document, and
+ * it is used by all the fragments of a merged document, while the variables of
+ * every fragment, like the <code>record</code>, are kept in a small context
+ * for the fragment, which is looked up first.
+ * <p>
+ * The shared layer contains the shared variables of the factory, like the
+ * company details, and if the merged document implements
+ * {@link PdfContextConfigurer}, the variables set by it. The locale is taken
+ * from the first {@link LocalizedPdfOutput} of the fragment and the document,
+ * then from the {@link LocaleContextHolder}, if the request locale is enabled,
+ * and finally the default locale is used.
+ * 
+ * @author zsombor
+ */
+public class PdfContextFactory {
+
+    private Locale defaultLocale = Locale.ENGLISH;
+
+    private boolean requestLocale;
+
+    private Map<String, Object> sharedVariables = Collections.emptyMap();
+
+    /**
+     * Set the locale, which is used when neither the document, nor the request
+     * specifies one. Defaults to {@link Locale#ENGLISH}.
+     * 
+     * @param defaultLocale
+     */
+    public void setDefaultLocale(Locale defaultLocale) {
+        if (defaultLocale == null) {
+            throw new IllegalArgumentException("defaultLocale must not be null");
+        }
+        this.defaultLocale = defaultLocale;
+    }
+
+    public Locale getDefaultLocale() {
+        return defaultLocale;
+    }
+
+    /**
+     * Use the locale of the current request from the
+     * {@link LocaleContextHolder}, if the document doesn't specify one. The
+     * locale is looked up on the thread, which starts rendering the document,
+     * so the fragments rendered on an executor use it too.
+     * 
+     * @param requestLocale
+     */
+    public void setRequestLocale(boolean requestLocale) {
+        this.requestLocale = requestLocale;
+    }
+
+    public boolean isRequestLocale() {
+        return requestLocale;
+    }
+
+    /**
+     * Set the variables, which are visible in every template, like the
+     * company details. The values are shared by the concurrently rendered
+     * documents, so they shouldn't be modified by the templates.
+     * 
+     * @param sharedVariables
+     */
+    public void setSharedVariables(Map<String, Object> sharedVariables) {
+        this.sharedVariables = sharedVariables != null ? Collections.unmodifiableMap(new HashMap<>(sharedVariables)) : Collections.emptyMap();
+    }
+
+    public Map<String, Object> getSharedVariables() {
+        return sharedVariables;
+    }
+
+    /**
+     * Create the shared layer of the variables for a document.
+     * 
+     * @param document
+     *            the rendered document, or null, if it's not known
+     * @return the read-only context, shared by all the fragments of the
+     *         document
+     */
+    public IContext createSharedContext(PdfOutput document) {
+        final Locale locale = resolveLocale(document);
+        if (!(document instanceof MergedPdfOutput && document instanceof PdfContextConfigurer)) {
+            return new SharedContext(locale, sharedVariables);
+        }
+        final Context documentContext = new Context(locale);
+        ((PdfContextConfigurer) document).init(documentContext);
+        final Map<String, Object> variables = new HashMap<>(sharedVariables);
+        for (String name : documentContext.getVariableNames()) {
+            variables.put(name, documentContext.getVariable(name));
+        }
+        return new SharedContext(documentContext.getLocale(), Collections.unmodifiableMap(variables));
+    }
+
+    /**
+     * Create the context for one fragment, on top of the shared context.
+     * 
+     * @param fragment
+     * @param shared
+     * @return the context, which should be used to render the fragment
+     */
+    public IContext createContext(PdfOutput fragment, IContext shared) {
+        final Context context = new Context(getLocale(fragment, shared));
+        context.setVariable("record", fragment);
+        if (fragment instanceof PdfContextConfigurer) {
+            ((PdfContextConfigurer) fragment).init(context);
+        }
+        return shared.getVariableNames().isEmpty() ? context : new LayeredContext(context, shared);
+    }
+
+    /**
+     * @param fragment
+     * @param shared
+     * @return the locale, which the fragment is rendered with: its own locale,
+     *         if it has one, otherwise the locale of the shared context
+     */
+    public Locale getLocale(PdfOutput fragment, IContext shared) {
+        final Locale fragmentLocale = fragment instanceof LocalizedPdfOutput ? ((LocalizedPdfOutput) fragment).getLocale() : null;
+        return fragmentLocale != null ? fragmentLocale : shared.getLocale();
+    }
+
+    /**
+     * @param document
+     * @return the locale of the document
+     */
+    protected Locale resolveLocale(PdfOutput document) {
+        if (document instanceof LocalizedPdfOutput) {
+            final Locale locale = ((LocalizedPdfOutput) document).getLocale();
+            if (locale != null) {
+                return locale;
+            }
+        }
+        if (requestLocale) {
+            final LocaleContext localeContext = LocaleContextHolder.getLocaleContext();
+            if (localeContext != null && localeContext.getLocale() != null) {
+                return localeContext.getLocale();
+            }
+        }
+        return defaultLocale;
+    }
+
+    private static final class SharedContext implements IContext {
+        private final Locale locale;
+        private final Map<String, Object> variables;
+
+        SharedContext(Locale locale, Map<String, Object> variables) {
+            this.locale = locale;
+            this.variables = variables;
+        }
+
+        @Override
+        public Locale getLocale() {
+            return locale;
+        }
+
+        @Override
+        public boolean containsVariable(String name) {
+            return variables.containsKey(name);
+        }
+
+        @Override
+        public Set<String> getVariableNames() {
+            return variables.keySet();
+        }
+
+        @Override
+        public Object getVariable(String name) {
+            return variables.get(name);
+        }
+    }
+
+    /**
+     * The variables of a fragment, which hide the shared variables with the
+     * same name.
+     */
+    private static final class LayeredContext implements IContext {
+        private final Context fragment;
+        private final IContext shared;
+
+        LayeredContext(Context fragment, IContext shared) {
+            this.fragment = fragment;
+            this.shared = shared;
+        }
+
+        @Override
+        public Locale getLocale() {
+            return fragment.getLocale();
+        }
+
+        @Override
+        public boolean containsVariable(String name) {
+            return fragment.containsVariable(name) || shared.containsVariable(name);
+        }
+
+        @Override
+        public Set<String> getVariableNames() {
+            final Set<String> names = new HashSet<>(shared.getVariableNames());
+            names.addAll(fragment.getVariableNames());
+            return names;
+        }
+
+        @Override
+        public Object getVariable(String name) {
+            return fragment.containsVariable(name) ? fragment.getVariable(name) : shared.getVariable(name);
+        }
+    }
+}
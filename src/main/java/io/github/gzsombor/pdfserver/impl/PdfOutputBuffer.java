@@ -0,0 +1,181 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Buffer for a generated document, outside of the heap: the content is kept in
+ * direct buffers from a {@link DirectBufferPool}, up to the memory threshold,
+ * and the rest is spilled into a temporary file. The complete content, with its
+ * {@link #size()}, is sent with {@link #writeTo(OutputStream)}, from the file
+ * with {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
+ * <p>
+ * The buffers are returned to the pool, and the temporary file is deleted in
+ * {@link #release()}. Closing the stream doesn't release the content, as the
+ * PDF writer closes its output, when the document is finished.
+ *
+ * @author zsombor
+ */
+public class PdfOutputBuffer extends OutputStream {
+
+    private final DirectBufferPool pool;
+
+    private final long memoryThreshold;
+
+    private final Path spillDirectory;
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+
+    private ByteBuffer current;
+
+    private long size;
+
+    private Path file;
+
+    private FileChannel channel;
+
+    /**
+     * @param pool
+     *            the pool of the memory buffers
+     * @param memoryThreshold
+     *            the number of bytes kept in memory, before the content is
+     *            spilled into a file
+     * @param spillDirectory
+     *            the directory of the temporary file
+     */
+    public PdfOutputBuffer(DirectBufferPool pool, long memoryThreshold, Path spillDirectory) {
+        this.pool = pool;
+        this.memoryThreshold = memoryThreshold;
+        this.spillDirectory = spillDirectory;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (current == null || !current.hasRemaining()) {
+            nextChunk();
+        }
+        current.put((byte) b);
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (current == null || !current.hasRemaining()) {
+                nextChunk();
+            }
+            final int length = Math.min(len, current.remaining());
+            current.put(b, off, length);
+            off += length;
+            len -= length;
+            size += length;
+        }
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return true, if the content is spilled into a temporary file
+     */
+    public boolean isSpilled() {
+        return channel != null;
+    }
+
+    /**
+     * Write the whole content into the output stream.
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        final WritableByteChannel target = Channels.newChannel(out);
+        if (channel != null) {
+            flushCurrent();
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+        } else {
+            for (ByteBuffer chunk : chunks) {
+                writeFully(target, chunk.duplicate().flip());
+            }
+            if (current != null) {
+                writeFully(target, current.duplicate().flip());
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Return the buffers to the pool, and delete the temporary file.
+     *
+     * @throws IOException
+     */
+    public void release() throws IOException {
+        for (ByteBuffer chunk : chunks) {
+            pool.release(chunk);
+        }
+        chunks.clear();
+        if (current != null) {
+            pool.release(current);
+            current = null;
+        }
+        if (channel != null) {
+            channel.close();
+            channel = null;
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private void nextChunk() throws IOException {
+        if (current == null) {
+            current = pool.acquire();
+            return;
+        }
+        if (channel != null) {
+            flushCurrent();
+            return;
+        }
+        chunks.add(current);
+        current = pool.acquire();
+        if ((long) (chunks.size() + 1) * current.capacity() > memoryThreshold) {
+            spill();
+        }
+    }
+
+    private void spill() throws IOException {
+        Files.createDirectories(spillDirectory);
+        file = Files.createTempFile(spillDirectory, "pdf-", ".tmp");
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        for (ByteBuffer chunk : chunks) {
+            writeFully(channel, chunk.flip());
+            pool.release(chunk);
+        }
+        chunks.clear();
+    }
+
+    private void flushCurrent() throws IOException {
+        writeFully(channel, current.flip());
+        current.clear();
+    }
+
+    private static void writeFully(WritableByteChannel target, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+}
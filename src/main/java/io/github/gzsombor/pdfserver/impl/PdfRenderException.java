@@ -0,0 +1,19 @@
+package io.github.gzsombor.pdfserver.impl;
+
+/**
+ * Thrown when a document can't be rendered into PDF.
+ * 
+ * @author zsombor
+ */
+public class PdfRenderException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PdfRenderException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public PdfRenderException(String message) {
+        super(message);
+    }
+}
@@ -1,23 +1,35 @@
 package io.github.gzsombor.pdfserver.impl;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.file.Path;
 import java.util.Collection;
-import java.util.function.Consumer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpOutputMessage;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotWritableException;
 import org.springframework.stereotype.Component;
+import org.thymeleaf.context.IContext;
 import org.w3c.dom.Document;
+import org.xhtmlrenderer.extend.ReplacedElementFactory;
 
+import io.github.gzsombor.pdfserver.api.CacheablePdfOutput;
 import io.github.gzsombor.pdfserver.api.MergedPdfOutput;
 import io.github.gzsombor.pdfserver.api.PdfOutput;
 import org.xhtmlrenderer.pdf.ITextRenderer;
 
 import org.openpdf.text.DocumentException;
+import org.openpdf.text.pdf.PdfCopy;
+import org.openpdf.text.pdf.PdfReader;
 
 @Component
 public class PdfResponseConverter extends ThymeleafMessageConverter {
@@ -25,59 +37,733 @@ public class PdfResponseConverter extends ThymeleafMessageConverter {
 
     private Function<String, String> contentFormatter;
 
+    private Function<Writer, Writer> contentFilter;
+
+    private RendererPool rendererPool;
+
+    private PdfResultCache resultCache;
+
+    private ResourceCache resourceCache;
+
+    private MergeStrategy mergeStrategy = MergeStrategy.DOCUMENT;
+
+    private boolean continuousPageNumbering = true;
+
+    private RenderLimits renderLimits;
+
+    private RenderBackend renderBackend;
+
+    private boolean localFallback = true;
+
+    private RenderAdmission admission;
+
+    private int responseBufferSize = 1024 * 1024;
+
+    private Path spillDirectory;
+
+    private DirectBufferPool bufferPool = new DirectBufferPool(64 * 1024, 64);
+
     public PdfResponseConverter() {
         super(MediaType.APPLICATION_PDF);
-        this.contentFormatter = x -> x;
+    }
+
+    protected PdfResponseConverter(MediaType... supportedMediaTypes) {
+        super(supportedMediaTypes);
     }
 
     /**
      * Set the content formatter function, so it is possible to further
      * customize the generated content before it's fed into the PDF generator.
+     * It requires the whole document as a String, so for large documents, a
+     * streaming content filter is preferable.
      * 
      * @param contentFormatter
+     * @see #setContentFilter(Function)
      */
     public void setContentFormatter(Function<String, String> contentFormatter) {
         this.contentFormatter = contentFormatter;
     }
 
+    /**
+     * Set the content filter function, which can wrap the writer receiving the
+     * generated content with a filtering writer, like
+     * {@link CharacterMappingWriter}. The filtered content is fed into the PDF
+     * generator without building intermediate Strings.
+     * 
+     * @param contentFilter
+     */
+    public void setContentFilter(Function<Writer, Writer> contentFilter) {
+        this.contentFilter = contentFilter;
+    }
+
+    /**
+     * Set the pool of renderers to use, so the renderers, and the fonts
+     * registered in them are reused between the requests. If not set, a new
+     * renderer is created for every PDF.
+     * 
+     * @param rendererPool
+     */
+    public void setRendererPool(RendererPool rendererPool) {
+        this.rendererPool = rendererPool;
+    }
+
+    public RendererPool getRendererPool() {
+        return rendererPool;
+    }
+
+    /**
+     * Set the cache for the stylesheets, fonts and images, used by the
+     * renderers created by this converter. When a renderer pool is used, the
+     * cache should be set on the pool with
+     * {@link RendererPool#setResourceCache(ResourceCache)}.
+     * 
+     * @param resourceCache
+     */
+    public void setResourceCache(ResourceCache resourceCache) {
+        this.resourceCache = resourceCache;
+    }
+
+    public ResourceCache getResourceCache() {
+        return resourceCache;
+    }
+
+    /**
+     * Set the cache for the generated documents. Only the
+     * {@link CacheablePdfOutput} instances with a fingerprint are cached, a
+     * cached document is written out without rendering it again.
+     * 
+     * @param resultCache
+     */
+    public void setResultCache(PdfResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public PdfResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Set how the parts of a {@link MergedPdfOutput} are combined. With
+     * {@link MergeStrategy#CONCATENATE}, every part is rendered separately, on
+     * the render executor, if set, and only
+     * {@link #getRenderParallelism() renderParallelism} parts are kept in
+     * memory, while their pages are written into the response.
+     * 
+     * @param mergeStrategy
+     */
+    public void setMergeStrategy(MergeStrategy mergeStrategy) {
+        this.mergeStrategy = mergeStrategy;
+    }
+
+    public MergeStrategy getMergeStrategy() {
+        return mergeStrategy;
+    }
+
+    /**
+     * If true, the page numbers of a concatenated part continue from the last
+     * page of the previous part, so <code>counter(page)</code> is the same as
+     * in the merged document. Only the page number needs to wait for the
+     * layout of the previous parts, the layout itself is still concurrent.
+     * <code>counter(pages)</code> is always the page count of the part. Only
+     * used with {@link MergeStrategy#CONCATENATE}.
+     * 
+     * @param continuousPageNumbering
+     */
+    public void setContinuousPageNumbering(boolean continuousPageNumbering) {
+        this.continuousPageNumbering = continuousPageNumbering;
+    }
+
+    public boolean isContinuousPageNumbering() {
+        return continuousPageNumbering;
+    }
+
+    /**
+     * Set the limits of the rendered documents, a document exceeding them is
+     * stopped with a {@link RenderLimitExceededException}.
+     * 
+     * @param renderLimits
+     */
+    public void setRenderLimits(RenderLimits renderLimits) {
+        this.renderLimits = renderLimits;
+    }
+
+    public RenderLimits getRenderLimits() {
+        return renderLimits;
+    }
+
+    /**
+     * Set the backend, which lays out the documents, and generates the PDF, for
+     * example a {@link RemoteRenderBackend}. If not set, the documents are
+     * rendered in this process. The parts of the
+     * {@link MergeStrategy#CONCATENATE concatenated} documents are always
+     * rendered locally.
+     * 
+     * @param renderBackend
+     */
+    public void setRenderBackend(RenderBackend renderBackend) {
+        this.renderBackend = renderBackend;
+    }
+
+    public RenderBackend getRenderBackend() {
+        return renderBackend;
+    }
+
+    /**
+     * If true, the documents are rendered locally, when the render backend is
+     * not available. Defaults to true.
+     * 
+     * @param localFallback
+     */
+    public void setLocalFallback(boolean localFallback) {
+        this.localFallback = localFallback;
+    }
+
+    public boolean isLocalFallback() {
+        return localFallback;
+    }
+
+    /**
+     * Set the admission control of the responses, which limits the number of
+     * the small and the large documents rendered at the same time separately,
+     * and rejects the documents over the limits with 503 status, before the
+     * response is started. The documents served from the result cache are not
+     * limited, neither the documents rendered by the {@link AsyncPdfRenderer}
+     * and the {@link BatchRenderer}, which are bounded by their own executors.
+     * 
+     * @param admission
+     */
+    public void setAdmission(RenderAdmission admission) {
+        this.admission = admission;
+    }
+
+    public RenderAdmission getAdmission() {
+        return admission;
+    }
+
+    /**
+     * Set the number of bytes of the generated PDF, which are kept in memory
+     * before the response is committed. A document, which fails within this
+     * size, is reported with an {@link HttpMessageNotWritableException}, so the
+     * client gets an error status, instead of a truncated PDF, and a document
+     * within this size is sent with a <code>Content-Length</code>. Larger
+     * documents are streamed after the first <code>responseBufferSize</code>
+     * bytes.
+     * 
+     * @param responseBufferSize
+     */
+    public void setResponseBufferSize(int responseBufferSize) {
+        if (responseBufferSize < 0) {
+            throw new IllegalArgumentException("responseBufferSize must not be negative: " + responseBufferSize);
+        }
+        this.responseBufferSize = responseBufferSize;
+    }
+
+    public int getResponseBufferSize() {
+        return responseBufferSize;
+    }
+
+    /**
+     * Set the directory, where the generated documents larger than
+     * {@link #setResponseBufferSize(int) responseBufferSize} are spilled. If
+     * set, every document is buffered completely, the first
+     * <code>responseBufferSize</code> bytes in direct buffers, the rest in a
+     * temporary file, so every response has a <code>Content-Length</code>, and
+     * no failed document is committed, without holding large documents on the
+     * heap.
+     * 
+     * @param spillDirectory
+     */
+    public void setSpillDirectory(Path spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * Set the pool of the direct buffers, used when a spill directory is set.
+     * 
+     * @param bufferPool
+     */
+    public void setBufferPool(DirectBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
+    public DirectBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
     @Override
     protected void writeInternal(PdfOutput t, HttpOutputMessage outputMessage) throws IOException {
-        LOG.info("rendering content  : {}", t);
+        LOG.debug("rendering content  : {}", t.getOutputName());
+        final IContext shared = getContextFactory().createSharedContext(t);
+        final String cacheKey = resultCache != null ? cacheKey(t, shared) : null;
+        if (cacheKey != null) {
+            final byte[] cached = resultCache.get(cacheKey);
+            if (cached != null) {
+                writeContent(t, cached, outputMessage);
+                return;
+            }
+        }
+        try (RenderAdmission.Permit permit = admit(t)) {
+            writeRendered(t, shared, cacheKey, outputMessage);
+            if (permit != null) {
+                permit.succeeded();
+            }
+        }
+    }
+
+    /**
+     * Wait for a place for the document in its lane, if the admission control
+     * is set.
+     * 
+     * @param t
+     * @return the permit, which must be closed, when the document is rendered,
+     *         or null, if there is no admission control
+     * @throws org.springframework.web.server.ResponseStatusException
+     *             with 503 status, if the document is not admitted
+     */
+    protected RenderAdmission.Permit admit(PdfOutput t) {
+        return admission != null ? admission.admit(t) : null;
+    }
+
+    private void writeRendered(PdfOutput t, IContext shared, String cacheKey, HttpOutputMessage outputMessage) throws IOException {
+        if (cacheKey != null) {
+            final byte[] content;
+            try {
+                content = renderAndCache(t, shared, cacheKey);
+            } catch (final PdfRenderException e) {
+                throw new HttpMessageNotWritableException("Unable to render " + t.getOutputName() + " : " + e.getMessage(), e);
+            }
+            writeContent(t, content, outputMessage);
+            return;
+        }
+        if (spillDirectory != null) {
+            writeBuffered(t, shared, outputMessage);
+            return;
+        }
+        final ResponseBuffer out = new ResponseBuffer(responseBufferSize, outputMessage, headers -> writeHeaders(headers, false, t.getOutputName()));
+        try {
+            renderPdf(t, shared, out);
+        } catch (final PdfRenderException e) {
+            if (out.isCommitted()) {
+                throw e;
+            }
+            throw new HttpMessageNotWritableException("Unable to render " + t.getOutputName() + " : " + e.getMessage(), e);
+        }
+        out.finish();
+        getMetrics().recordOutputSize(templateTag(t), out.getCount());
+    }
+
+    private void writeContent(PdfOutput t, byte[] content, HttpOutputMessage outputMessage) throws IOException {
+        writeHeaders(outputMessage.getHeaders(), false, t.getOutputName());
+        outputMessage.getHeaders().setContentLength(content.length);
+        outputMessage.getBody().write(content);
+        getMetrics().recordOutputSize(templateTag(t), content.length);
+    }
+
+    private void writeBuffered(PdfOutput t, IContext shared, HttpOutputMessage outputMessage) throws IOException {
+        final PdfOutputBuffer buffer = new PdfOutputBuffer(bufferPool, responseBufferSize, spillDirectory);
+        try {
+            renderPdf(t, shared, buffer);
+            writeHeaders(outputMessage.getHeaders(), false, t.getOutputName());
+            outputMessage.getHeaders().setContentLength(buffer.size());
+            buffer.writeTo(outputMessage.getBody());
+            getMetrics().recordOutputSize(templateTag(t), buffer.size());
+        } catch (final PdfRenderException e) {
+            throw new HttpMessageNotWritableException("Unable to render " + t.getOutputName() + " : " + e.getMessage(), e);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Render the PdfOutput into a byte array, or return it from the result
+     * cache, if it is cached.
+     * 
+     * @param t
+     * @return the generated PDF
+     * @throws PdfRenderException
+     *             if the PDF couldn't be generated
+     */
+    public byte[] renderToByteArray(PdfOutput t) throws IOException {
+        return renderToByteArray(t, getContextFactory().createSharedContext(t));
+    }
+
+    /**
+     * Render the PdfOutput into a byte array with the given shared context, or
+     * return it from the result cache, if it is cached.
+     * 
+     * @param t
+     * @param shared
+     *            the variables and the locale shared with the other parts of
+     *            the same document
+     * @return the generated PDF
+     * @throws PdfRenderException
+     *             if the PDF couldn't be generated
+     */
+    public byte[] renderToByteArray(PdfOutput t, IContext shared) throws IOException {
+        final String cacheKey = resultCache != null ? cacheKey(t, shared) : null;
+        if (cacheKey != null) {
+            final byte[] cached = resultCache.get(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return renderAndCache(t, shared, cacheKey);
+    }
+
+    private byte[] renderAndCache(PdfOutput t, IContext shared, String cacheKey) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        renderPdf(t, shared, buffer);
+        final byte[] content = buffer.toByteArray();
+        if (cacheKey != null) {
+            resultCache.put(cacheKey, content);
+        }
+        return content;
+    }
+
+    /**
+     * Render the PdfOutput into PDF, using the configured merge strategy for a
+     * {@link MergedPdfOutput}.
+     * 
+     * @param t
+     * @param out
+     * @throws PdfRenderException
+     *             if the PDF couldn't be generated
+     * @throws IOException
+     */
+    protected void renderPdf(PdfOutput t, OutputStream out) throws IOException {
+        renderPdf(t, getContextFactory().createSharedContext(t), out);
+    }
+
+    /**
+     * Render the PdfOutput into PDF with the given shared context.
+     * 
+     * @param t
+     * @param shared
+     *            the variables and the locale shared by the fragments
+     * @param out
+     * @throws PdfRenderException
+     *             if the PDF couldn't be generated
+     * @throws IOException
+     */
+    protected void renderPdf(PdfOutput t, IContext shared, OutputStream out) throws IOException {
+        final long start = System.nanoTime();
+        if (isConcatenated(t)) {
+            concatenate(((MergedPdfOutput) t).getIndividualPdfs(), shared, out, start);
+            return;
+        }
+        final Document document = createDocument(t, shared);
+        if (renderBackend != null) {
+            try {
+                renderBackend.render(document, templateTag(t), out);
+                return;
+            } catch (final RenderBackendUnavailableException e) {
+                if (!localFallback) {
+                    throw e;
+                }
+                LOG.warn("Rendering {} locally : {}", t.getOutputName(), e.getMessage());
+            }
+        }
+        writePdf(out, document, templateTag(t), start);
+    }
+
+    /**
+     * Lay out an already rendered and parsed document in this process, and
+     * write the PDF into the output stream.
+     * 
+     * @param document
+     * @param templateName
+     *            the name of the template, used in the metrics and the error
+     *            messages
+     * @param out
+     * @throws PdfRenderException
+     *             if the PDF couldn't be generated
+     */
+    public void renderDocument(Document document, String templateName, OutputStream out) {
+        writePdf(out, document, templateName, System.nanoTime());
+    }
+
+    /**
+     * Render the PdfOutput, or all the parts of a {@link MergedPdfOutput} into
+     * one document.
+     * 
+     * @param t
+     * @return the document to feed into the PDF generator
+     */
+    protected Document createDocument(PdfOutput t) {
+        return createDocument(t, getContextFactory().createSharedContext(t));
+    }
+
+    protected Document createDocument(PdfOutput t, IContext shared) {
         if (t instanceof MergedPdfOutput) {
-            MergedPdfOutput merged = (MergedPdfOutput) t;
-            Collection<? extends PdfOutput> parts = merged.getIndividualPdfs();
-            Document document = processList(parts);
+            Collection<? extends PdfOutput> parts = ((MergedPdfOutput) t).getIndividualPdfs();
+            return processList(parts, shared);
+        }
+        return processToDocument(t, shared);
+    }
 
-            writePdf(outputMessage, false, t.getOutputName(), renderer -> renderer.setDocument(document, null));
-        } else {
-            final String content = process(t);
-    
-            writePdf(outputMessage, false, t.getOutputName(), renderer -> renderer.setDocumentFromString(content));
+    /**
+     * @param t
+     * @return the key of the generated document in the result cache, or null,
+     *         if it shouldn't be cached.
+     */
+    protected String cacheKey(PdfOutput t) {
+        return cacheKey(t, getContextFactory().createSharedContext(t));
+    }
+
+    /**
+     * @param t
+     * @param shared
+     * @return the key of the generated document in the result cache, with the
+     *         locale, which it is rendered with, or null, if it shouldn't be
+     *         cached.
+     */
+    protected String cacheKey(PdfOutput t, IContext shared) {
+        if (!(t instanceof CacheablePdfOutput)) {
+            return null;
         }
+        final String fingerprint = ((CacheablePdfOutput) t).getFingerprint();
+        if (fingerprint == null) {
+            return null;
+        }
+        final String template = t instanceof MergedPdfOutput ? t.getClass().getName() : templateKey(t);
+        return template + '#' + fingerprint + '#' + getContextFactory().getLocale(t, shared);
     }
 
     @Override
-    protected String process(PdfOutput toPdf) {
-        String content = super.process(toPdf);
+    protected String process(PdfOutput toPdf, IContext shared) {
+        String content = super.process(toPdf, shared);
         return contentFormatter != null ? contentFormatter.apply(content) : content;
     }
 
-    private void writePdf(HttpOutputMessage outputMessage, boolean forDownload, String name, Consumer<ITextRenderer> setup) throws IOException {
-        outputMessage.getHeaders().setContentType(MediaType.APPLICATION_PDF);
+    @Override
+    protected void process(PdfOutput toPdf, IContext shared, Writer writer) {
+        if (renderLimits == null) {
+            super.process(toPdf, shared, writer);
+            return;
+        }
+        try {
+            super.process(toPdf, shared, renderLimits.limit(writer, System.nanoTime(), toPdf.getTemplateName()));
+        } catch (final RuntimeException e) {
+            // Thymeleaf wraps the exceptions thrown by the writer
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof RenderLimitExceededException) {
+                    throw (RenderLimitExceededException) cause;
+                }
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    protected Document processToDocument(PdfOutput toPdf, IContext shared) {
+        if (contentFormatter != null) {
+            final String content = process(toPdf, shared);
+            final long start = System.nanoTime();
+            final Document document = parseHtml(content);
+            getMetrics().recordDuration(RenderMetrics.Stage.PARSE, toPdf.getTemplateName(), System.nanoTime() - start);
+            return document;
+        }
+        return super.processToDocument(toPdf, shared);
+    }
+
+    @Override
+    protected boolean isTextFiltered() {
+        // the size and the time limits are checked by the writer
+        return contentFormatter != null || contentFilter != null
+                || (renderLimits != null && (renderLimits.getMaxHtmlSize() > 0 || renderLimits.getMaxRenderTime() != null));
+    }
+
+    @Override
+    protected Writer filterContent(Writer writer) {
+        return contentFilter != null ? contentFilter.apply(writer) : writer;
+    }
+
+    private void writeHeaders(HttpHeaders headers, boolean forDownload, String name) {
+        headers.setContentType(MediaType.APPLICATION_PDF);
         if (forDownload && name != null) {
-            outputMessage.getHeaders().set("Content-Disposition", "attachment; filename=\"" + name.replace('"', '_') + ".pdf\"");
+            headers.set("Content-Disposition", "attachment; filename=\"" + name.replace('"', '_') + ".pdf\"");
         }
-        final OutputStream out = outputMessage.getBody();
+    }
 
-        try {
-            final ITextRenderer renderer = new ITextRenderer();
+    private ITextRenderer acquireRenderer() {
+        if (rendererPool != null) {
+            return rendererPool.acquire();
+        }
+        return resourceCache != null ? CachingUserAgent.createRenderer(resourceCache) : new ITextRenderer();
+    }
+
+    private static String templateTag(PdfOutput t) {
+        return t instanceof MergedPdfOutput ? RenderMetrics.MERGED : t.getTemplateName();
+    }
+
+    private boolean isConcatenated(PdfOutput t) {
+        return mergeStrategy == MergeStrategy.CONCATENATE && t instanceof MergedPdfOutput
+                && !((MergedPdfOutput) t).getIndividualPdfs().isEmpty();
+    }
 
-            setup.accept(renderer);
+    /**
+     * Render every part into a separate PDF, in a bounded window of concurrent
+     * tasks, and copy their pages into the output in order. The pages of the
+     * cached parts are reused, if they start on the same page number.
+     */
+    private void concatenate(Collection<? extends PdfOutput> parts, IContext shared, OutputStream out, long startNanos) throws IOException {
+        final Executor executor = getRenderExecutor() != null ? getRenderExecutor() : Runnable::run;
+        final int parallelism = getRenderExecutor() != null ? getRenderParallelism() : 1;
+        final org.openpdf.text.Document pdf = new org.openpdf.text.Document();
+        final PdfCopy copy = new PdfCopy(pdf, out);
+        pdf.open();
+        final FirstPage firstPage = new FirstPage();
+        final long[] mergeNanos = new long[1];
+        final int[] pages = new int[1];
+        OrderedExecution.forEachOrderedAsync(parts, part -> {
+            final String key = getFragmentCache() != null ? fragmentKey(part, shared) : null;
+            final Supplier<LaidOutPart> layout = () -> layout(part, key, shared, startNanos);
+            final FragmentCache.Pages cached = key != null ? getFragmentCache().getPages(key) : null;
+            if (cached != null) {
+                return reuse(cached, layout, firstPage, executor);
+            }
+            final CompletableFuture<LaidOutPart> laidOut = CompletableFuture.supplyAsync(layout, executor);
+            if (!continuousPageNumbering) {
+                return laidOut.thenApplyAsync(l -> l.write(1), executor);
+            }
+            final CompletableFuture<Integer> start = firstPage.next;
+            firstPage.next = laidOut.thenCombine(start, (l, s) -> s + l.pageCount);
+            return laidOut.thenCombineAsync(start, LaidOutPart::write, executor);
+        }, parallelism, (PdfOutput part, byte[] content) -> {
+            final long start = System.nanoTime();
+            pages[0] += append(copy, content, part);
+            mergeNanos[0] += System.nanoTime() - start;
+            if (renderLimits != null) {
+                renderLimits.checkPages(pages[0], RenderMetrics.MERGED);
+            }
+        });
+        pdf.close();
+        getMetrics().recordDuration(RenderMetrics.Stage.MERGE, RenderMetrics.MERGED, mergeNanos[0]);
+        getMetrics().recordFragmentCount(RenderMetrics.MERGED, parts.size());
+    }
+
+    /**
+     * Use the cached pages of the part, if they were rendered with the same
+     * first page number, otherwise render it again, once its first page is
+     * known.
+     */
+    private CompletableFuture<byte[]> reuse(FragmentCache.Pages cached, Supplier<LaidOutPart> layout, FirstPage firstPage, Executor executor) {
+        final CompletableFuture<Integer> start;
+        if (continuousPageNumbering) {
+            start = firstPage.next;
+            firstPage.next = start.thenApply(s -> s + cached.getPageCount());
+        } else {
+            start = CompletableFuture.completedFuture(1);
+        }
+        return start.thenComposeAsync(s -> s == cached.getFirstPageNo() ? CompletableFuture.completedFuture(cached.getContent())
+                : CompletableFuture.supplyAsync(() -> layout.get().write(s), executor), executor);
+    }
+
+    private LaidOutPart layout(PdfOutput part, String key, IContext shared, long startNanos) {
+        final Document document = processFragment(part, shared);
+        final ITextRenderer renderer = acquireRenderer();
+        return new LaidOutPart(part, key, renderer, layout(renderer, document, part.getTemplateName(), startNanos));
+    }
+
+    /**
+     * Lay out the document, checking the render limits, if they are set.
+     * 
+     * @return the number of pages
+     */
+    private int layout(ITextRenderer renderer, Document document, String templateName, long startNanos) {
+        final long start = System.nanoTime();
+        if (renderLimits == null) {
+            renderer.setDocument(document, null);
             renderer.layout();
+        } else {
+            renderLimits.checkNodeCount(document, templateName);
+            final ReplacedElementFactory original = LayoutGuard.install(renderer.getSharedContext(), renderLimits, startNanos, templateName);
+            try {
+                renderer.setDocument(document, null);
+                renderer.layout();
+            } finally {
+                renderer.getSharedContext().setReplacedElementFactory(original);
+            }
+        }
+        final int pages = renderer.getRootBox().getLayer().getPages().size();
+        getMetrics().recordDuration(RenderMetrics.Stage.LAYOUT, templateName, System.nanoTime() - start);
+        getMetrics().recordPageCount(templateName, pages);
+        if (renderLimits != null) {
+            renderLimits.checkPages(pages, templateName);
+        }
+        return pages;
+    }
+
+    private int append(PdfCopy copy, byte[] content, PdfOutput part) throws IOException {
+        final PdfReader reader = new PdfReader(content);
+        try {
+            for (int i = 1; i <= reader.getNumberOfPages(); i++) {
+                copy.addPage(copy.getImportedPage(reader, i));
+            }
+            copy.freeReader(reader);
+            return reader.getNumberOfPages();
+        } catch (final DocumentException e) {
+            throw new PdfRenderException("Unable to append " + part.getTemplateName() + " : " + e.getMessage(), e);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void writePdf(OutputStream out, Document document, String templateName, long startNanos) {
+        try {
+            final ITextRenderer renderer = acquireRenderer();
+
+            layout(renderer, document, templateName, startNanos);
+            final long laidOut = System.nanoTime();
             renderer.createPDF(out);
             renderer.finishPDF();
+            getMetrics().recordDuration(RenderMetrics.Stage.PDF_WRITE, templateName, System.nanoTime() - laidOut);
+            if (rendererPool != null) {
+                rendererPool.release(renderer);
+            }
         } catch (final DocumentException e) {
-            LOG.error("Document error: " + e.getMessage(), e);
+            throw new PdfRenderException("Unable to render " + templateName + " : " + e.getMessage(), e);
+        }
+    }
+
+    private static final class FirstPage {
+        private CompletableFuture<Integer> next = CompletableFuture.completedFuture(1);
+    }
+
+    private final class LaidOutPart {
+        private final PdfOutput part;
+        private final String key;
+        private final ITextRenderer renderer;
+        private final int pageCount;
+
+        LaidOutPart(PdfOutput part, String key, ITextRenderer renderer, int pageCount) {
+            this.part = part;
+            this.key = key;
+            this.renderer = renderer;
+            this.pageCount = pageCount;
+        }
+
+        byte[] write(int firstPageNo) {
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            final long start = System.nanoTime();
+            try {
+                renderer.createPDF(buffer, true, firstPageNo);
+            } catch (final DocumentException e) {
+                throw new PdfRenderException("Unable to render " + part.getTemplateName() + " : " + e.getMessage(), e);
+            }
+            getMetrics().recordDuration(RenderMetrics.Stage.PDF_WRITE, part.getTemplateName(), System.nanoTime() - start);
+            if (rendererPool != null) {
+                rendererPool.release(renderer);
+            }
+            final byte[] content = buffer.toByteArray();
+            if (key != null) {
+                getFragmentCache().putPages(key, content, firstPageNo, pageCount);
+            }
+            return content;
         }
     }
 }
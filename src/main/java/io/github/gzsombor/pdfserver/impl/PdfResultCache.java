@@ -0,0 +1,217 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache for the generated documents, limited by the total size of the cached
+ * documents, and by the time to live of the entries. The least recently used
+ * entries are evicted first from the memory, and if a spill directory is
+ * configured, they are moved to the disk instead of dropping them, until they
+ * expire.
+ * 
+ * @author zsombor
+ */
+public class PdfResultCache {
+    private static final Logger LOG = LoggerFactory.getLogger(PdfResultCache.class);
+
+    private final long maxBytes;
+    private final long timeToLiveMillis;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+    private Path spillDirectory;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxBytes
+     *            the maximum total size of the documents kept in memory
+     * @param timeToLive
+     *            how long a document is served from the cache
+     */
+    public PdfResultCache(long maxBytes, Duration timeToLive) {
+        this.maxBytes = maxBytes;
+        this.timeToLiveMillis = timeToLive.toMillis();
+    }
+
+    /**
+     * Set the directory, where the documents evicted from memory are stored
+     * until they expire. If not set, they are dropped.
+     * 
+     * @param spillDirectory
+     */
+    public void setSpillDirectory(Path spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * @param key
+     * @return the cached document, or null, if it's not cached, or expired.
+     */
+    public byte[] get(String key) {
+        final long now = System.currentTimeMillis();
+        synchronized (this) {
+            final Entry entry = entries.get(key);
+            if (entry != null) {
+                if (now - entry.created < timeToLiveMillis) {
+                    hits.incrementAndGet();
+                    return entry.content;
+                }
+                remove(key);
+            }
+        }
+        final byte[] content = readSpilled(key, now);
+        if (content != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return content;
+    }
+
+    public void put(String key, byte[] content) {
+        final long now = System.currentTimeMillis();
+        if (content.length > maxBytes) {
+            spill(key, content, now);
+            return;
+        }
+        final List<Map.Entry<String, Entry>> evicted = new ArrayList<>();
+        synchronized (this) {
+            final Entry previous = entries.put(key, new Entry(content, now));
+            if (previous != null) {
+                currentBytes -= previous.content.length;
+            }
+            currentBytes += content.length;
+            final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (currentBytes > maxBytes && iterator.hasNext()) {
+                final Map.Entry<String, Entry> eldest = iterator.next();
+                iterator.remove();
+                currentBytes -= eldest.getValue().content.length;
+                evicted.add(eldest);
+            }
+        }
+        for (Map.Entry<String, Entry> entry : evicted) {
+            if (now - entry.getValue().created < timeToLiveMillis) {
+                spill(entry.getKey(), entry.getValue().content, entry.getValue().created);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+        if (spillDirectory != null && Files.isDirectory(spillDirectory)) {
+            try (Stream<Path> files = Files.list(spillDirectory)) {
+                files.filter(file -> file.getFileName().toString().endsWith(".pdf")).forEach(this::delete);
+            } catch (IOException e) {
+                LOG.warn("Unable to clear cache directory {} : {}", spillDirectory, e.getMessage());
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public synchronized long getSize() {
+        return currentBytes;
+    }
+
+    private void remove(String key) {
+        final Entry removed = entries.remove(key);
+        if (removed != null) {
+            currentBytes -= removed.content.length;
+        }
+    }
+
+    private byte[] readSpilled(String key, long now) {
+        if (spillDirectory == null) {
+            return null;
+        }
+        final Path file = spillFile(key);
+        try {
+            if (now - Files.getLastModifiedTime(file).toMillis() >= timeToLiveMillis) {
+                delete(file);
+                return null;
+            }
+            return Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOG.warn("Unable to read cached document {} : {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void spill(String key, byte[] content, long created) {
+        if (spillDirectory == null) {
+            return;
+        }
+        final Path file = spillFile(key);
+        try {
+            Files.createDirectories(spillDirectory);
+            final Path temp = Files.createTempFile(spillDirectory, "spill", ".tmp");
+            Files.write(temp, content);
+            Files.setLastModifiedTime(temp, FileTime.fromMillis(created));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Unable to store cached document {} : {}", file, e.getMessage());
+        }
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warn("Unable to delete cached document {} : {}", file, e.getMessage());
+        }
+    }
+
+    private Path spillFile(String key) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            final byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+            return spillDirectory.resolve(HexFormat.of().formatHex(hash) + ".pdf");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] content;
+        private final long created;
+
+        Entry(byte[] content, long created) {
+            this.content = content;
+            this.created = created;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import io.github.gzsombor.pdfserver.api.PdfOutput;
+
+/**
+ * Receives the documents generated by the {@link BatchRenderer}, one at a time,
+ * in the order of the batch.
+ *
+ * @author zsombor
+ */
+@FunctionalInterface
+public interface PdfSink {
+
+    void accept(PdfOutput output, byte[] content) throws IOException;
+
+    /**
+     * @param directory
+     * @return sink writing every document into the directory, named after its
+     *         output name, made unique within the documents of the sink, so
+     *         a new sink should be used for every batch
+     */
+    static PdfSink toDirectory(Path directory) {
+        final Set<String> names = new HashSet<>();
+        return (output, content) -> {
+            Files.createDirectories(directory);
+            Files.write(directory.resolve(uniqueFileName(names, output)), content);
+        };
+    }
+
+    /**
+     * @param zip
+     * @return sink writing every document as a new entry of the zip stream,
+     *         named after its output name, made unique within the entries
+     *         written by the sink. The stream is not closed.
+     */
+    static PdfSink toZip(ZipOutputStream zip) {
+        final Set<String> names = new HashSet<>();
+        return (output, content) -> {
+            zip.putNextEntry(new ZipEntry(uniqueFileName(names, output)));
+            zip.write(content);
+            zip.closeEntry();
+        };
+    }
+
+    static String fileName(PdfOutput output) {
+        return output.getOutputName().replace('/', '_').replace('\\', '_') + ".pdf";
+    }
+
+    /**
+     * @param output
+     * @param index
+     *            the position of the document, starting from 1
+     * @return the file name of the document, from its output name, or
+     *         <code>document-&lt;index&gt;.pdf</code>, if it has none
+     */
+    static String fileName(PdfOutput output, int index) {
+        return output.getOutputName() != null ? fileName(output) : "document-" + index + ".pdf";
+    }
+
+    /**
+     * @param names
+     *            the file names already used, the returned name is added to it
+     * @param output
+     * @return the file name of the document, with a <code>-2</code>,
+     *         <code>-3</code>... suffix, if an other document has the same
+     *         name
+     */
+    static String uniqueFileName(Set<String> names, PdfOutput output) {
+        final String fileName = fileName(output, names.size() + 1);
+        String name = fileName;
+        for (int i = 2; !names.add(name); i++) {
+            name = fileName.substring(0, fileName.length() - ".pdf".length()) + "-" + i + ".pdf";
+        }
+        return name;
+    }
+}
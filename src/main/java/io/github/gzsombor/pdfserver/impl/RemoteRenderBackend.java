@@ -0,0 +1,233 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.transform.TransformerException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+
+/**
+ * Sends the documents to remote {@link RenderWorker render workers} over HTTP,
+ * and receives the generated PDF. The workers are used in a round robin
+ * fashion; a worker, which can't be reached, or fails with a server error, is
+ * skipped for the retry delay, and the document is sent to the next one. When
+ * none of the workers could render the document, a
+ * {@link RenderBackendUnavailableException} is thrown, so the converter can
+ * render it locally.
+ * <p>
+ * The resources referenced from the documents, like the stylesheets and the
+ * images, are loaded by the workers, so they need the same resources, for
+ * example on their classpath.
+ * 
+ * @author zsombor
+ */
+public class RemoteRenderBackend implements RenderBackend {
+    private static final Logger LOG = LoggerFactory.getLogger(RemoteRenderBackend.class);
+
+    static final String TEMPLATE_HEADER = "X-Pdf-Template";
+
+    private final List<Worker> workers = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+
+    private Duration connectTimeout = Duration.ofSeconds(2);
+    private Duration requestTimeout = Duration.ofSeconds(60);
+    private Duration retryDelay = Duration.ofSeconds(10);
+
+    private volatile HttpClient httpClient;
+
+    /**
+     * @param workerUris
+     *            the render endpoints of the workers, like
+     *            <code>http://render-1:8090/render</code>
+     */
+    public RemoteRenderBackend(Collection<URI> workerUris) {
+        if (workerUris.isEmpty()) {
+            throw new IllegalArgumentException("At least one render worker is needed");
+        }
+        for (URI uri : workerUris) {
+            workers.add(new Worker(uri));
+        }
+    }
+
+    /**
+     * Set how long to wait for the connection to a worker. Defaults to 2
+     * seconds.
+     * 
+     * @param connectTimeout
+     */
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.httpClient = null;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Set how long to wait for the whole response of a worker, including the
+     * PDF. Defaults to 60 seconds.
+     * 
+     * @param requestTimeout
+     */
+    public void setRequestTimeout(Duration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * Set how long a failed worker is skipped. Defaults to 10 seconds.
+     * 
+     * @param retryDelay
+     */
+    public void setRetryDelay(Duration retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    public Duration getRetryDelay() {
+        return retryDelay;
+    }
+
+    /**
+     * @return the number of the workers, which are not skipped because of a
+     *         recent failure
+     */
+    public int getAvailableWorkerCount() {
+        final long now = System.nanoTime();
+        int available = 0;
+        for (Worker worker : workers) {
+            if (worker.isAvailable(now)) {
+                available++;
+            }
+        }
+        return available;
+    }
+
+    @Override
+    public void render(Document document, String templateName, OutputStream out) throws IOException {
+        final byte[] content = serialize(document, templateName);
+        final int first = Math.floorMod(next.getAndIncrement(), workers.size());
+        String lastFailure = "all workers are skipped after a failure";
+        for (int i = 0; i < workers.size(); i++) {
+            final Worker worker = workers.get((first + i) % workers.size());
+            if (!worker.isAvailable(System.nanoTime())) {
+                continue;
+            }
+            final HttpResponse<byte[]> response;
+            try {
+                response = exchange(worker, templateName, content);
+            } catch (final IOException e) {
+                lastFailure = worker.failed(e.toString(), retryDelay);
+                continue;
+            }
+            if (response.statusCode() == 200) {
+                out.write(response.body());
+                return;
+            }
+            final String message = new String(response.body(), StandardCharsets.UTF_8);
+            if (response.statusCode() == RenderWorker.UNPROCESSABLE) {
+                throw new PdfRenderException("Unable to render " + templateName + " on " + worker.uri + " : " + message);
+            }
+            lastFailure = worker.failed("status " + response.statusCode() + " " + message, retryDelay);
+        }
+        throw new RenderBackendUnavailableException("No render worker could render " + templateName + ", last failure: " + lastFailure);
+    }
+
+    /**
+     * Send the document to the worker, and receive the whole response within
+     * the request timeout. The timeout of the request itself only covers the
+     * wait for the response headers, so the body is received with a deadline
+     * too. Nothing is written to the output, until the whole PDF is received,
+     * so a failed transfer can be retried on the next worker.
+     */
+    private HttpResponse<byte[]> exchange(Worker worker, String templateName, byte[] content) throws IOException {
+        final CompletableFuture<HttpResponse<byte[]>> response = client().sendAsync(request(worker, templateName, content),
+                HttpResponse.BodyHandlers.ofByteArray());
+        try {
+            return response.get(requestTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (final TimeoutException e) {
+            response.cancel(true);
+            throw new HttpTimeoutException("No response within " + requestTimeout);
+        } catch (final InterruptedException e) {
+            response.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RenderBackendUnavailableException("Interrupted while rendering " + templateName, e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(String.valueOf(e.getCause()), e.getCause());
+        }
+    }
+
+    private HttpRequest request(Worker worker, String templateName, byte[] content) {
+        return HttpRequest.newBuilder(worker.uri)
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/xhtml+xml; charset=UTF-8")
+                .header(TEMPLATE_HEADER, templateName)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(content))
+                .build();
+    }
+
+    private HttpClient client() {
+        HttpClient client = httpClient;
+        if (client == null) {
+            client = HttpClient.newBuilder().connectTimeout(connectTimeout).build();
+            httpClient = client;
+        }
+        return client;
+    }
+
+    private static byte[] serialize(Document document, String templateName) {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(buffer, StandardCharsets.UTF_8)) {
+            XmlProcessors.writeXml(document, writer);
+        } catch (final IOException | TransformerException e) {
+            throw new PdfRenderException("Unable to serialize " + templateName + " : " + e.getMessage(), e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static final class Worker {
+        private final URI uri;
+        private volatile long skippedUntil;
+
+        Worker(URI uri) {
+            this.uri = uri;
+        }
+
+        boolean isAvailable(long now) {
+            return now - skippedUntil >= 0;
+        }
+
+        String failed(String reason, Duration retryDelay) {
+            LOG.warn("Render worker {} failed, skipping it for {} : {}", uri, retryDelay, reason);
+            skippedUntil = System.nanoTime() + retryDelay.toNanos();
+            return uri + " : " + reason;
+        }
+    }
+}
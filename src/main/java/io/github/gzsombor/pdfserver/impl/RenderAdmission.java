@@ -0,0 +1,263 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.github.gzsombor.pdfserver.api.MergedPdfOutput;
+import io.github.gzsombor.pdfserver.api.PdfOutput;
+
+/**
+ * Admission control in front of the converter, so a burst of large merged
+ * reports doesn't hold up the small documents, like receipts. Every document
+ * is sent to one of two lanes, {@link Lane#INTERACTIVE} or {@link Lane#BULK},
+ * by its estimated cost, and every lane has its own limit of the documents
+ * rendered at the same time. A document, which doesn't get a place in its lane
+ * within the maximum wait, is rejected with a {@link ResponseStatusException}
+ * with 503 status, instead of waiting on the heap.
+ * <p>
+ * The cost of a document is estimated from its fragments: the average render
+ * time of a fragment is tracked per template, as an exponentially weighted
+ * moving average of the past documents. The templates without history are
+ * estimated with the default fragment cost.
+ *
+ * @author zsombor
+ */
+public class RenderAdmission {
+
+    public enum Lane {
+        /** Small documents, which a user is waiting for. */
+        INTERACTIVE,
+        /** Large documents, like the merged reports. */
+        BULK
+    }
+
+    private final Map<Lane, Semaphore> permits = new EnumMap<>(Lane.class);
+    private final Map<Lane, AtomicLong> rejected = new EnumMap<>(Lane.class);
+    private final Map<Lane, Integer> limits = new EnumMap<>(Lane.class);
+
+    private final ConcurrentHashMap<String, Double> fragmentCosts = new ConcurrentHashMap<>();
+
+    private Duration maxWait = Duration.ZERO;
+
+    private Duration bulkThreshold = Duration.ofSeconds(2);
+
+    private Duration defaultFragmentCost = Duration.ofMillis(100);
+
+    private double smoothing = 0.2;
+
+    /**
+     * @param interactiveLimit
+     *            the maximum number of interactive documents rendered at the
+     *            same time
+     * @param bulkLimit
+     *            the maximum number of bulk documents rendered at the same time
+     */
+    public RenderAdmission(int interactiveLimit, int bulkLimit) {
+        if (interactiveLimit < 1 || bulkLimit < 1) {
+            throw new IllegalArgumentException("interactiveLimit and bulkLimit must be positive: " + interactiveLimit + ", " + bulkLimit);
+        }
+        limits.put(Lane.INTERACTIVE, interactiveLimit);
+        limits.put(Lane.BULK, bulkLimit);
+        for (Lane lane : Lane.values()) {
+            permits.put(lane, new Semaphore(limits.get(lane)));
+            rejected.put(lane, new AtomicLong());
+        }
+    }
+
+    /**
+     * Set how long a document can wait for a place in its lane, before it is
+     * rejected. Defaults to zero, the documents are rejected immediately, when
+     * their lane is full.
+     *
+     * @param maxWait
+     */
+    public void setMaxWait(Duration maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    public Duration getMaxWait() {
+        return maxWait;
+    }
+
+    /**
+     * Set the estimated render time, above which a document goes to the bulk
+     * lane. Defaults to two seconds.
+     *
+     * @param bulkThreshold
+     */
+    public void setBulkThreshold(Duration bulkThreshold) {
+        this.bulkThreshold = bulkThreshold;
+    }
+
+    public Duration getBulkThreshold() {
+        return bulkThreshold;
+    }
+
+    /**
+     * Set the estimated render time of a fragment, whose template hasn't been
+     * rendered yet. Defaults to 100 milliseconds, so without history a merged
+     * document with more than 20 fragments goes to the bulk lane.
+     *
+     * @param defaultFragmentCost
+     */
+    public void setDefaultFragmentCost(Duration defaultFragmentCost) {
+        this.defaultFragmentCost = defaultFragmentCost;
+    }
+
+    public Duration getDefaultFragmentCost() {
+        return defaultFragmentCost;
+    }
+
+    /**
+     * Set the weight of the last document in the moving average of the
+     * fragment costs, between 0 and 1. Defaults to 0.2.
+     *
+     * @param smoothing
+     */
+    public void setSmoothing(double smoothing) {
+        if (smoothing <= 0 || smoothing > 1) {
+            throw new IllegalArgumentException("smoothing must be in (0, 1]: " + smoothing);
+        }
+        this.smoothing = smoothing;
+    }
+
+    public double getSmoothing() {
+        return smoothing;
+    }
+
+    /**
+     * Wait for a place for the document in its lane.
+     *
+     * @param t
+     * @return the permit, which must be closed, when the document is rendered
+     * @throws ResponseStatusException
+     *             with 503 status, if the lane is full
+     */
+    public Permit admit(PdfOutput t) {
+        final Lane lane = laneOf(t);
+        final Semaphore semaphore = permits.get(lane);
+        boolean acquired;
+        try {
+            acquired = maxWait.isZero() ? semaphore.tryAcquire() : semaphore.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.get(lane).incrementAndGet();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many " + lane.name().toLowerCase(Locale.ROOT) + " PDFs are being rendered");
+        }
+        return new Permit(t, lane);
+    }
+
+    /**
+     * @param t
+     * @return the lane of the document, by its estimated cost
+     */
+    public Lane laneOf(PdfOutput t) {
+        return estimateNanos(t) > bulkThreshold.toNanos() ? Lane.BULK : Lane.INTERACTIVE;
+    }
+
+    /**
+     * @param t
+     * @return the estimated render time of the document, the sum of the
+     *         estimated costs of its fragments
+     */
+    public long estimateNanos(PdfOutput t) {
+        if (!(t instanceof MergedPdfOutput)) {
+            return (long) fragmentCost(t.getTemplateName());
+        }
+        double total = 0;
+        for (PdfOutput part : ((MergedPdfOutput) t).getIndividualPdfs()) {
+            total += fragmentCost(part.getTemplateName());
+        }
+        return (long) total;
+    }
+
+    private double fragmentCost(String templateName) {
+        final Double cost = fragmentCosts.get(templateName);
+        return cost != null ? cost : defaultFragmentCost.toNanos();
+    }
+
+    /**
+     * Record the render time of a document, the time is divided evenly between
+     * its fragments.
+     */
+    private void record(PdfOutput t, long nanos) {
+        if (!(t instanceof MergedPdfOutput)) {
+            update(t.getTemplateName(), nanos);
+            return;
+        }
+        final Collection<? extends PdfOutput> parts = ((MergedPdfOutput) t).getIndividualPdfs();
+        if (parts.isEmpty()) {
+            return;
+        }
+        final double perFragment = (double) nanos / parts.size();
+        parts.stream().map(PdfOutput::getTemplateName).distinct().forEach(templateName -> update(templateName, perFragment));
+    }
+
+    private void update(String templateName, double nanos) {
+        fragmentCosts.merge(templateName, nanos, (average, sample) -> average + smoothing * (sample - average));
+    }
+
+    public int getActiveCount(Lane lane) {
+        return limits.get(lane) - permits.get(lane).availablePermits();
+    }
+
+    public long getRejectedCount(Lane lane) {
+        return rejected.get(lane).get();
+    }
+
+    /**
+     * The place of a document in its lane. Closing it frees the place, and
+     * records the render time of the document, if it was rendered
+     * successfully, so the failed and aborted documents don't distort the
+     * estimates.
+     */
+    public final class Permit implements AutoCloseable {
+        private final PdfOutput output;
+        private final Lane lane;
+        private final long start = System.nanoTime();
+        private long elapsed = -1;
+        private boolean closed;
+
+        private Permit(PdfOutput output, Lane lane) {
+            this.output = output;
+            this.lane = lane;
+        }
+
+        public Lane getLane() {
+            return lane;
+        }
+
+        /**
+         * Mark the document as rendered, its render time is recorded, when the
+         * permit is closed.
+         */
+        public void succeeded() {
+            elapsed = System.nanoTime() - start;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (elapsed >= 0) {
+                record(output, elapsed);
+            }
+            permits.get(lane).release();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.w3c.dom.Document;
+
+/**
+ * Renders the parsed XHTML document into PDF outside of the
+ * {@link PdfResponseConverter}, for example on remote render workers, with
+ * {@link RemoteRenderBackend}. Without a backend, the converter lays out the
+ * documents in the process.
+ * 
+ * @author zsombor
+ */
+public interface RenderBackend {
+
+    /**
+     * Render the document, and write the PDF into the output stream.
+     * 
+     * @param document
+     *            the merged and parsed document, it must not be modified
+     * @param templateName
+     *            the name of the template, used in the metrics and the error
+     *            messages
+     * @param out
+     * @throws RenderBackendUnavailableException
+     *             if the document couldn't be rendered, before anything was
+     *             written, so it can be rendered locally instead
+     * @throws PdfRenderException
+     *             if the document can't be rendered
+     * @throws IOException
+     */
+    void render(Document document, String templateName, OutputStream out) throws IOException;
+}
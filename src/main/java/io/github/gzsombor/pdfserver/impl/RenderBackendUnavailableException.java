@@ -0,0 +1,21 @@
+package io.github.gzsombor.pdfserver.impl;
+
+/**
+ * Thrown by a {@link RenderBackend}, when it couldn't render the document, for
+ * example because none of the render workers are reachable, and nothing was
+ * written into the output yet.
+ * 
+ * @author zsombor
+ */
+public class RenderBackendUnavailableException extends PdfRenderException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RenderBackendUnavailableException(String message) {
+        super(message);
+    }
+
+    public RenderBackendUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,16 @@
+package io.github.gzsombor.pdfserver.impl;
+
+/**
+ * Thrown when a document exceeds one of the configured {@link RenderLimits},
+ * and its rendering is stopped.
+ * 
+ * @author zsombor
+ */
+public class RenderLimitExceededException extends PdfRenderException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RenderLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,179 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Duration;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * Limits for a rendered document, so a runaway document, for example a report
+ * with hundreds of thousands of rows, is stopped early, instead of blocking a
+ * render thread and filling the heap for minutes. The limits are checked
+ * cooperatively, while the template is processed, and during the layout, and a
+ * {@link RenderLimitExceededException} is thrown, when one is exceeded.
+ * <p>
+ * The HTML size is limited per template, so for the parts of a merged document
+ * separately, the node and page counts are limited for the document, which is
+ * laid out. A zero or null limit means no limit.
+ * 
+ * @author zsombor
+ */
+public class RenderLimits {
+
+    private long maxHtmlSize;
+
+    private int maxNodeCount;
+
+    private int maxPages;
+
+    private Duration maxRenderTime;
+
+    /**
+     * Set the maximum number of characters, which a template can generate.
+     * 
+     * @param maxHtmlSize
+     */
+    public void setMaxHtmlSize(long maxHtmlSize) {
+        this.maxHtmlSize = maxHtmlSize;
+    }
+
+    public long getMaxHtmlSize() {
+        return maxHtmlSize;
+    }
+
+    /**
+     * Set the maximum number of DOM nodes in a document, checked before its
+     * layout.
+     * 
+     * @param maxNodeCount
+     */
+    public void setMaxNodeCount(int maxNodeCount) {
+        this.maxNodeCount = maxNodeCount;
+    }
+
+    public int getMaxNodeCount() {
+        return maxNodeCount;
+    }
+
+    /**
+     * Set the maximum number of pages in a document, checked during the layout.
+     * 
+     * @param maxPages
+     */
+    public void setMaxPages(int maxPages) {
+        this.maxPages = maxPages;
+    }
+
+    public int getMaxPages() {
+        return maxPages;
+    }
+
+    /**
+     * Set the maximum time of rendering a document: the processing of the
+     * templates and the layout, measured from the start of the request. The
+     * processing of a template, which is rendered on a render executor, is
+     * measured from its own start.
+     * 
+     * @param maxRenderTime
+     */
+    public void setMaxRenderTime(Duration maxRenderTime) {
+        this.maxRenderTime = maxRenderTime;
+    }
+
+    public Duration getMaxRenderTime() {
+        return maxRenderTime;
+    }
+
+    void checkTime(long startNanos, String templateName) {
+        if (maxRenderTime != null && System.nanoTime() - startNanos > maxRenderTime.toNanos()) {
+            throw new RenderLimitExceededException("Rendering " + templateName + " takes longer than " + maxRenderTime);
+        }
+    }
+
+    void checkPages(int pages, String templateName) {
+        if (maxPages > 0 && pages > maxPages) {
+            throw new RenderLimitExceededException(templateName + " has more than " + maxPages + " pages");
+        }
+    }
+
+    void checkNodeCount(Document document, String templateName) {
+        if (maxNodeCount <= 0) {
+            return;
+        }
+        int count = 0;
+        Node node = document.getDocumentElement();
+        while (node != null) {
+            if (++count > maxNodeCount) {
+                throw new RenderLimitExceededException(templateName + " has more than " + maxNodeCount + " nodes");
+            }
+            if (node.getFirstChild() != null) {
+                node = node.getFirstChild();
+            } else {
+                while (node != null && node.getNextSibling() == null) {
+                    node = node.getParentNode();
+                    if (node == document) {
+                        node = null;
+                    }
+                }
+                if (node != null) {
+                    node = node.getNextSibling();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param writer
+     * @param startNanos
+     * @param templateName
+     * @return the writer, which checks the size of the generated content, and
+     *         the render time, on every write
+     */
+    Writer limit(Writer writer, long startNanos, String templateName) {
+        if (maxHtmlSize <= 0 && maxRenderTime == null) {
+            return writer;
+        }
+        return new LimitedWriter(writer, startNanos, templateName);
+    }
+
+    private final class LimitedWriter extends FilterWriter {
+        private final long startNanos;
+        private final String templateName;
+        private long size;
+
+        LimitedWriter(Writer out, long startNanos, String templateName) {
+            super(out);
+            this.startNanos = startNanos;
+            this.templateName = templateName;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            check(1);
+            out.write(c);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            check(len);
+            out.write(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            check(len);
+            out.write(str, off, len);
+        }
+
+        private void check(int len) {
+            size += len;
+            if (maxHtmlSize > 0 && size > maxHtmlSize) {
+                throw new RenderLimitExceededException(templateName + " is larger than " + maxHtmlSize + " characters");
+            }
+            checkTime(startNanos, templateName);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package io.github.gzsombor.pdfserver.impl;
+
+/**
+ * Receives the durations of the render stages, and the size of the generated
+ * documents, tagged by the template name. The parts of a merged document are
+ * tagged with their own template, the merged document itself with
+ * {@link #MERGED}.
+ * <p>
+ * Every method has an empty default implementation, so an implementation
+ * needs to override only the measurements it is interested in. The methods
+ * are called from the render threads, so they must be thread safe.
+ * 
+ * @author zsombor
+ * @see MicrometerRenderMetrics
+ */
+public interface RenderMetrics {
+
+    /**
+     * The template name, used for merged documents.
+     */
+    String MERGED = "merged";
+
+    /**
+     * Doesn't record anything.
+     */
+    RenderMetrics NONE = new RenderMetrics() {
+    };
+
+    enum Stage {
+        /** Processing the Thymeleaf template. */
+        TEMPLATE,
+        /** Parsing the generated HTML into a DOM. */
+        PARSE,
+        /** Merging the parts of a merged document. */
+        MERGE,
+        /** The layout of the document by Flying Saucer. */
+        LAYOUT,
+        /** Writing the laid out document as PDF. */
+        PDF_WRITE
+    }
+
+    default void recordDuration(Stage stage, String templateName, long nanos) {
+    }
+
+    default void recordOutputSize(String templateName, long bytes) {
+    }
+
+    default void recordPageCount(String templateName, int pages) {
+    }
+
+    default void recordFragmentCount(String templateName, int fragments) {
+    }
+}
@@ -0,0 +1,192 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.thymeleaf.exceptions.TemplateInputException;
+import org.xhtmlrenderer.extend.UserAgentCallback;
+
+import io.github.gzsombor.pdfserver.api.PdfOutput;
+
+/**
+ * Warms up a converter during the startup of the application, so the first
+ * users don't have to wait for the template parsing, the class loading, the
+ * font loading and the JIT compilation. As a Spring bean, it runs after all the
+ * singletons are created, before the application context is refreshed, so
+ * before the application reports that it's ready.
+ * <p>
+ * The warm-up:
+ * <ul>
+ * <li>processes the listed templates, and the templates of the
+ * {@link TemplateManifest} of the converter, with an empty context, so they
+ * are parsed into the template cache, even if the processing fails without the
+ * variables,</li>
+ * <li>loads the stylesheets, fonts and images listed in the manifest into the
+ * resource cache, if the converter has one,</li>
+ * <li>starts the idle renderers of the renderer pool, with the fonts
+ * loaded,</li>
+ * <li>renders the sample documents <code>iterations</code> times, and throws
+ * away the result, which loads the stylesheets and images into the resource
+ * cache, and gives the JIT compiler some work.</li>
+ * </ul>
+ * A failing sample is only logged, it doesn't stop the application.
+ *
+ * @author zsombor
+ */
+public class RenderWarmup implements SmartInitializingSingleton {
+    private static final Logger LOG = LoggerFactory.getLogger(RenderWarmup.class);
+
+    private final PdfResponseConverter converter;
+
+    private final List<String> templateNames = new ArrayList<>();
+
+    private final List<PdfOutput> samples = new ArrayList<>();
+
+    private int iterations = 3;
+
+    private int prestartedRenderers = 1;
+
+    public RenderWarmup(PdfResponseConverter converter) {
+        this.converter = converter;
+    }
+
+    /**
+     * Set the names of the templates, which are parsed into the template cache,
+     * without the path prefix of the converter.
+     *
+     * @param templateNames
+     */
+    public void setTemplateNames(Collection<String> templateNames) {
+        this.templateNames.clear();
+        this.templateNames.addAll(templateNames);
+    }
+
+    public List<String> getTemplateNames() {
+        return templateNames;
+    }
+
+    /**
+     * Set the sample documents, which are rendered during the warm-up.
+     *
+     * @param samples
+     */
+    public void setSamples(Collection<? extends PdfOutput> samples) {
+        this.samples.clear();
+        this.samples.addAll(samples);
+    }
+
+    public List<PdfOutput> getSamples() {
+        return samples;
+    }
+
+    /**
+     * Set how many times the samples are rendered.
+     *
+     * @param iterations
+     */
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Set the number of idle renderers started in the renderer pool of the
+     * converter, if it has one.
+     *
+     * @param prestartedRenderers
+     */
+    public void setPrestartedRenderers(int prestartedRenderers) {
+        this.prestartedRenderers = prestartedRenderers;
+    }
+
+    public int getPrestartedRenderers() {
+        return prestartedRenderers;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        warmUp();
+    }
+
+    public void warmUp() {
+        final long start = System.nanoTime();
+        final Set<String> parsed = new LinkedHashSet<>(templateNames);
+        final TemplateManifest manifest = converter.getTemplateManifest();
+        if (manifest != null) {
+            parsed.addAll(manifest.getTemplateNames());
+        }
+        for (String templateName : parsed) {
+            parseTemplate(templateName);
+        }
+        if (converter.getRendererPool() != null) {
+            converter.getRendererPool().prestart(prestartedRenderers);
+        }
+        if (manifest != null) {
+            loadResources(manifest.getDependencies());
+        }
+        int rendered = 0;
+        for (int i = 0; i < iterations; i++) {
+            for (PdfOutput sample : samples) {
+                try {
+                    converter.renderPdf(sample, OutputStream.nullOutputStream());
+                    rendered++;
+                } catch (final Exception e) {
+                    LOG.warn("Warm-up of " + sample.getOutputName() + " failed: " + e.getMessage(), e);
+                }
+            }
+        }
+        LOG.info("Warm-up finished in {} ms, {} templates parsed, {} documents rendered", (System.nanoTime() - start) / 1_000_000,
+                parsed.size(), rendered);
+    }
+
+    /**
+     * Load the resources through the user agent of a renderer, which puts them
+     * into the shared resource cache.
+     */
+    private void loadResources(Set<String> uris) {
+        final ResourceCache resourceCache = converter.getRendererPool() != null ? converter.getRendererPool().getResourceCache()
+                : converter.getResourceCache();
+        if (resourceCache == null || uris.isEmpty()) {
+            return;
+        }
+        final UserAgentCallback userAgent = CachingUserAgent.createRenderer(resourceCache).getSharedContext().getUserAgentCallback();
+        for (String uri : uris) {
+            try {
+                final String lowerCase = uri.toLowerCase(Locale.ROOT);
+                if (lowerCase.endsWith(".css")) {
+                    userAgent.getCSSResource(uri);
+                } else if (lowerCase.matches(".*\\.(png|jpe?g|gif|bmp)$")) {
+                    userAgent.getImageResource(uri);
+                } else {
+                    userAgent.getBinaryResource(uri);
+                }
+            } catch (final RuntimeException e) {
+                LOG.warn("Unable to load {} : {}", uri, e.getMessage());
+            }
+        }
+    }
+
+    private void parseTemplate(String templateName) {
+        try {
+            converter.getTemplateEngine().process(converter.getPathPrefix() + templateName, converter.getContextFactory().createSharedContext(null),
+                    Writer.nullWriter());
+        } catch (final TemplateInputException e) {
+            LOG.warn("Unable to parse " + templateName + " : " + e.getMessage(), e);
+        } catch (final RuntimeException e) {
+            // the template is parsed and cached before it is processed, the missing variables don't matter
+            LOG.debug("Processing {} without variables failed: {}", templateName, e.getMessage());
+        }
+    }
+}
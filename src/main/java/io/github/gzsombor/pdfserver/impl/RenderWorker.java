@@ -0,0 +1,151 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Render node for the {@link RemoteRenderBackend}: a small HTTP server, which
+ * accepts the XHTML documents with <code>POST /render</code>, and responds
+ * with the PDF, rendered with the given converter, using its renderer pool,
+ * resource cache, render limits and metrics. A document, which is received,
+ * but can't be rendered, like one exceeding the render limits, or one with a
+ * broken stylesheet, is rejected with 422, so it isn't sent to an other
+ * worker, and this worker isn't skipped. The other statuses are reserved for
+ * the failures of the worker itself.
+ * 
+ * @author zsombor
+ */
+public class RenderWorker {
+    private static final Logger LOG = LoggerFactory.getLogger(RenderWorker.class);
+
+    static final int UNPROCESSABLE = 422;
+
+    private final PdfResponseConverter converter;
+    private final InetSocketAddress address;
+    private Executor executor;
+    private HttpServer server;
+
+    private final AtomicLong renderedCount = new AtomicLong();
+
+    /**
+     * @param converter
+     *            the converter, which renders the documents
+     * @param address
+     *            the address to listen on, with port 0 a free port is used
+     */
+    public RenderWorker(PdfResponseConverter converter, InetSocketAddress address) {
+        this.converter = converter;
+        this.address = address;
+    }
+
+    /**
+     * Set the executor, which handles the requests, and limits the number of
+     * documents rendered at the same time. If not set, the requests are
+     * handled one after the other.
+     * 
+     * @param executor
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        server = HttpServer.create(address, 0);
+        server.createContext("/render", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        LOG.info("Render worker started on {}", getUri());
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    /**
+     * @return the render endpoint of the started worker
+     */
+    public synchronized URI getUri() {
+        if (server == null) {
+            throw new IllegalStateException("The render worker is not started");
+        }
+        final InetSocketAddress bound = server.getAddress();
+        return URI.create("http://" + bound.getHostString() + ":" + bound.getPort() + "/render");
+    }
+
+    public long getRenderedCount() {
+        return renderedCount.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "Only POST is supported");
+                return;
+            }
+            final String templateName = templateName(exchange);
+            final byte[] content;
+            try (InputStream body = exchange.getRequestBody()) {
+                content = body.readAllBytes();
+            }
+            final ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+            try {
+                final Document document = converter.parseHtml(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8));
+                converter.renderDocument(document, templateName, pdf);
+            } catch (final PdfRenderException e) {
+                LOG.info("Unable to render {} : {}", templateName, e.getMessage());
+                respond(exchange, UNPROCESSABLE, String.valueOf(e.getMessage()));
+                return;
+            } catch (final RuntimeException e) {
+                // broken stylesheets, or a bug in the layout of this document,
+                // an other worker would fail the same way
+                LOG.warn("Unable to render " + templateName + " : " + e.getMessage(), e);
+                respond(exchange, UNPROCESSABLE, String.valueOf(e.getMessage()));
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/pdf");
+            exchange.sendResponseHeaders(200, pdf.size());
+            try (OutputStream body = exchange.getResponseBody()) {
+                pdf.writeTo(body);
+            }
+            renderedCount.incrementAndGet();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String templateName(HttpExchange exchange) {
+        final String templateName = exchange.getRequestHeaders().getFirst(RemoteRenderBackend.TEMPLATE_HEADER);
+        return templateName != null ? templateName : "remote";
+    }
+
+    private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+        final byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
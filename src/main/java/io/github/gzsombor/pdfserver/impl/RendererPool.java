@@ -0,0 +1,210 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.openpdf.text.DocumentException;
+import org.openpdf.text.pdf.BaseFont;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.xhtmlrenderer.pdf.ITextFontResolver;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+
+/**
+ * Keeps a limited number of already initialized {@link ITextRenderer}
+ * instances, so the shared context, the user agent and the registered fonts
+ * don't have to be set up again for every PDF.
+ * <p>
+ * A renderer is used by only one thread at a time: {@link #acquire()} returns
+ * an idle renderer or creates a new one, if none is available, and
+ * {@link #release(ITextRenderer)} resets the per request state, drops the
+ * document, its boxes and its PDF writer, and keeps the renderer for the next
+ * request, if there are less than <code>maxIdle</code> idle renderers.
+ * Renderers which failed during rendering should not be released, just
+ * dropped.
+ * <p>
+ * Only the idle renderers are bounded: {@link #acquire()} never waits, so the
+ * number of renderers in use is limited by the callers, for example by the
+ * render executor or the {@link RenderAdmission} of the converter.
+ *
+ * @author zsombor
+ */
+public class RendererPool {
+
+    private static final String XHTML_NAMESPACE = "http://www.w3.org/1999/xhtml";
+
+    private static final DOMImplementation DOM_IMPLEMENTATION = createDomImplementation();
+
+    private final BlockingQueue<ITextRenderer> idle;
+
+    private final List<FontDefinition> fonts = new CopyOnWriteArrayList<>();
+
+    private ResourceCache resourceCache;
+
+    public RendererPool(int maxIdle) {
+        if (maxIdle < 1) {
+            throw new IllegalArgumentException("maxIdle must be positive: " + maxIdle);
+        }
+        this.idle = new ArrayBlockingQueue<>(maxIdle);
+    }
+
+    /**
+     * Register a font file, which is loaded into every renderer created by this
+     * pool, using the {@link BaseFont#IDENTITY_H} encoding.
+     *
+     * @param path
+     * @param embedded
+     */
+    public void addFont(String path, boolean embedded) {
+        addFont(path, BaseFont.IDENTITY_H, embedded);
+    }
+
+    public void addFont(String path, String encoding, boolean embedded) {
+        fonts.add(new FontDefinition(path, encoding, embedded, false));
+    }
+
+    /**
+     * Register every font from a directory, which is loaded into every
+     * renderer created by this pool.
+     *
+     * @param directory
+     * @param embedded
+     */
+    public void addFontDirectory(String directory, boolean embedded) {
+        fonts.add(new FontDefinition(directory, BaseFont.IDENTITY_H, embedded, true));
+    }
+
+    /**
+     * Set the cache, which is used by all the renderers created by this pool to
+     * load the stylesheets, fonts and images.
+     *
+     * @param resourceCache
+     */
+    public void setResourceCache(ResourceCache resourceCache) {
+        this.resourceCache = resourceCache;
+    }
+
+    public ResourceCache getResourceCache() {
+        return resourceCache;
+    }
+
+    public ITextRenderer acquire() {
+        final ITextRenderer renderer = idle.poll();
+        return renderer != null ? renderer : createRenderer();
+    }
+
+    public void release(ITextRenderer renderer) {
+        if (idle.remainingCapacity() == 0) {
+            // the pool is full, it's dropped without resetting
+            return;
+        }
+        try {
+            reset(renderer);
+        } catch (final RuntimeException e) {
+            // not reusable, it's dropped
+            return;
+        }
+        idle.offer(renderer);
+    }
+
+    /**
+     * Create idle renderers, with the fonts loaded, until there are
+     * <code>count</code> idle renderers, or the pool is full.
+     *
+     * @param count
+     */
+    public void prestart(int count) {
+        while (idle.size() < count && idle.offer(createRenderer())) {
+            // keep creating
+        }
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Drop all the idle renderers, for example after the font configuration
+     * has been changed.
+     */
+    public void clear() {
+        idle.clear();
+    }
+
+    protected ITextRenderer createRenderer() {
+        final ITextRenderer renderer = resourceCache != null ? CachingUserAgent.createRenderer(resourceCache) : new ITextRenderer();
+        final ITextFontResolver fontResolver = renderer.getFontResolver();
+        for (FontDefinition font : fonts) {
+            try {
+                if (font.directory) {
+                    fontResolver.addFontDirectory(font.path, font.encoding, font.embedded);
+                } else {
+                    fontResolver.addFont(font.path, font.encoding, font.embedded);
+                }
+            } catch (DocumentException | IOException e) {
+                throw new IllegalStateException("Unable to load font " + font.path + " : " + e.getMessage(), e);
+            }
+        }
+        return renderer;
+    }
+
+    /**
+     * Clear the state, which was set for one document, and shouldn't be
+     * visible for the next one. The renderer has no method to drop the
+     * document, so an empty document is rendered, which replaces the DOM, the
+     * box tree and the PDF writer of the last document, otherwise every idle
+     * renderer would keep them in memory.
+     *
+     * @param renderer
+     */
+    protected void reset(ITextRenderer renderer) {
+        renderer.getFontResolver().flushFontFaceFonts();
+        renderer.setListener(null);
+        renderer.setPdfPageEvent(null);
+        renderer.setPDFEncryption(null);
+        renderer.setDocument(emptyDocument(), null);
+        renderer.layout();
+        try {
+            renderer.createPDF(OutputStream.nullOutputStream());
+        } catch (final DocumentException e) {
+            throw new IllegalStateException("Unable to reset the renderer: " + e.getMessage(), e);
+        }
+    }
+
+    private static Document emptyDocument() {
+        final Document document = DOM_IMPLEMENTATION.createDocument(XHTML_NAMESPACE, "html", null);
+        document.getDocumentElement().appendChild(document.createElementNS(XHTML_NAMESPACE, "body"));
+        return document;
+    }
+
+    private static DOMImplementation createDomImplementation() {
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        try {
+            return factory.newDocumentBuilder().getDOMImplementation();
+        } catch (final ParserConfigurationException e) {
+            throw new IllegalStateException("Unable to create DOM builder: " + e.getMessage(), e);
+        }
+    }
+
+    private static final class FontDefinition {
+        private final String path;
+        private final String encoding;
+        private final boolean embedded;
+        private final boolean directory;
+
+        FontDefinition(String path, String encoding, boolean embedded, boolean directory) {
+            this.path = path;
+            this.encoding = encoding;
+            this.embedded = embedded;
+            this.directory = directory;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xhtmlrenderer.extend.FSImage;
+import org.xhtmlrenderer.resource.ImageResource;
+
+/**
+ * Memory bounded cache for the resources referenced from the documents, like
+ * stylesheets, fonts and decoded images, keyed by their resolved URI. It can be
+ * shared by all the renderers of the JVM, through {@link CachingUserAgent}.
+ * 
+ * @author zsombor
+ */
+public class ResourceCache {
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxBytes
+     *            the maximum, estimated memory usage of the cached resources
+     */
+    public ResourceCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public byte[] getBytes(String uri) {
+        final Object value = get(uri);
+        return value instanceof byte[] ? (byte[]) value : null;
+    }
+
+    public void putBytes(String uri, byte[] content) {
+        put(uri, content, content.length);
+    }
+
+    public ImageResource getImage(String uri) {
+        final Object value = get(uri);
+        return value instanceof ImageResource ? (ImageResource) value : null;
+    }
+
+    public void putImage(String uri, ImageResource image) {
+        final FSImage fsImage = image.getImage();
+        // decoded images are estimated at 4 bytes per pixel
+        final long size = fsImage != null ? 4L * fsImage.getWidth() * fsImage.getHeight() : 0;
+        put(uri, image, size);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public synchronized long getSize() {
+        return currentBytes;
+    }
+
+    private synchronized Object get(String uri) {
+        final Entry entry = entries.get(uri);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.value;
+    }
+
+    private synchronized void put(String uri, Object value, long size) {
+        if (size > maxBytes) {
+            return;
+        }
+        final Entry previous = entries.put(uri, new Entry(value, size));
+        if (previous != null) {
+            currentBytes -= previous.size;
+        }
+        currentBytes += size;
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            currentBytes -= iterator.next().size;
+            iterator.remove();
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long size;
+
+        Entry(Object value, long size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+
+/**
+ * Keeps the beginning of the response in memory, and commits the response only
+ * when the content is larger than the threshold. So a failure of a document,
+ * which fits into the buffer, can still be reported with an error status, and
+ * a successfully generated document gets an exact <code>Content-Length</code>
+ * in {@link #finish()}.
+ * 
+ * @author zsombor
+ */
+class ResponseBuffer extends OutputStream {
+
+    private final int threshold;
+
+    private final HttpOutputMessage outputMessage;
+
+    private final Consumer<HttpHeaders> headers;
+
+    private byte[] buffer = new byte[8192];
+
+    private long count;
+
+    private OutputStream body;
+
+    /**
+     * @param threshold
+     *            the maximum number of bytes kept in memory
+     * @param outputMessage
+     * @param headers
+     *            sets the headers of the response, before it is committed
+     */
+    ResponseBuffer(int threshold, HttpOutputMessage outputMessage, Consumer<HttpHeaders> headers) {
+        this.threshold = threshold;
+        this.outputMessage = outputMessage;
+        this.headers = headers;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (body == null && count + len > threshold) {
+            commit();
+        }
+        if (body != null) {
+            body.write(b, off, len);
+        } else {
+            if (count + len > buffer.length) {
+                buffer = Arrays.copyOf(buffer, (int) Math.min(threshold, Math.max(buffer.length * 2L, count + len)));
+            }
+            System.arraycopy(b, off, buffer, (int) count, len);
+        }
+        count += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (body != null) {
+            body.flush();
+        }
+    }
+
+    /**
+     * Write the buffered content with its length, if the response is not
+     * committed yet.
+     */
+    void finish() throws IOException {
+        if (body == null) {
+            headers.accept(outputMessage.getHeaders());
+            outputMessage.getHeaders().setContentLength(count);
+            outputMessage.getBody().write(buffer, 0, (int) count);
+        }
+    }
+
+    boolean isCommitted() {
+        return body != null;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    private void commit() throws IOException {
+        headers.accept(outputMessage.getHeaders());
+        body = outputMessage.getBody();
+        body.write(buffer, 0, (int) count);
+        buffer = null;
+    }
+}
@@ -0,0 +1,145 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.thymeleaf.IEngineConfiguration;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.cache.ICache;
+import org.thymeleaf.cache.ICacheManager;
+import org.thymeleaf.cache.TemplateCacheKey;
+import org.thymeleaf.engine.TemplateModel;
+import org.thymeleaf.templateresolver.ITemplateResolver;
+import org.thymeleaf.templateresolver.TemplateResolution;
+import org.thymeleaf.templateresource.ITemplateResource;
+
+/**
+ * Evicts the templates from the template cache of the engine, when their
+ * sources have been changed. Besides the rendered template, every template in
+ * the cache is checked, so the fragments included with <code>th:insert</code>
+ * or <code>th:replace</code> are reloaded too. The source of a template is
+ * checked at most once in the given interval, and only the changed templates
+ * are evicted, the other cached templates, and the expression caches are
+ * kept.
+ * 
+ * @author zsombor
+ */
+class TemplateChangeDetector {
+    private static final Logger LOG = LoggerFactory.getLogger(TemplateChangeDetector.class);
+
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
+    private final ConcurrentMap<String, TemplateState> states = new ConcurrentHashMap<>();
+
+    private volatile long checkIntervalNanos;
+
+    TemplateChangeDetector(Duration checkInterval) {
+        setCheckInterval(checkInterval);
+    }
+
+    void setCheckInterval(Duration checkInterval) {
+        this.checkIntervalNanos = checkInterval.toNanos();
+    }
+
+    Duration getCheckInterval() {
+        return Duration.ofNanos(checkIntervalNanos);
+    }
+
+    /**
+     * Evict the template, and the other cached templates, like the included
+     * fragments, from the cache of the engine, if they are not yet checked, or
+     * their sources have been changed since the last check.
+     * 
+     * @param templateEngine
+     * @param templateName
+     */
+    void checkForChanges(TemplateEngine templateEngine, String templateName) {
+        // the included fragments are cached under the template, which includes them
+        final Map<String, List<TemplateCacheKey>> cachedKeys = new LinkedHashMap<>();
+        cachedKeys.put(templateName, new ArrayList<>());
+        final ICacheManager cacheManager = templateEngine.getCacheManager();
+        final ICache<TemplateCacheKey, TemplateModel> templateCache = cacheManager != null ? cacheManager.getTemplateCache() : null;
+        if (templateCache != null) {
+            for (TemplateCacheKey key : templateCache.keySet()) {
+                cachedKeys.computeIfAbsent(key.getTemplate(), name -> new ArrayList<>()).add(key);
+            }
+        }
+        cachedKeys.forEach((name, keys) -> {
+            if (isChanged(templateEngine, name)) {
+                LOG.debug("template {} changed, evicting from cache", name);
+                templateEngine.clearTemplateCacheFor(name);
+                for (TemplateCacheKey key : keys) {
+                    templateCache.clearKey(key);
+                }
+            }
+        });
+    }
+
+    private boolean isChanged(TemplateEngine templateEngine, String templateName) {
+        final long now = System.nanoTime();
+        final TemplateState current = states.get(templateName);
+        if (current != null && now - current.checked < checkIntervalNanos) {
+            return false;
+        }
+        // the source is read outside of the map, so the other templates are not blocked
+        final long checksum = checksum(templateEngine, templateName);
+        final boolean[] changed = new boolean[1];
+        states.compute(templateName, (name, state) -> {
+            if (state != null && state.checked - now >= 0) {
+                // checked by an other thread in the meantime
+                return state;
+            }
+            changed[0] = state == null || checksum == UNKNOWN || checksum != state.checksum;
+            return new TemplateState(System.nanoTime(), checksum);
+        });
+        return changed[0];
+    }
+
+    private static long checksum(TemplateEngine templateEngine, String templateName) {
+        final IEngineConfiguration configuration = templateEngine.getConfiguration();
+        for (ITemplateResolver resolver : configuration.getTemplateResolvers()) {
+            final TemplateResolution resolution = resolver.resolveTemplate(configuration, null, templateName, null);
+            if (resolution == null) {
+                continue;
+            }
+            final ITemplateResource resource = resolution.getTemplateResource();
+            if (!resolution.isTemplateResourceExistenceVerified() && !resource.exists()) {
+                continue;
+            }
+            try (Reader reader = resource.reader()) {
+                final char[] buffer = new char[4096];
+                long checksum = 1125899906842597L;
+                int read;
+                while ((read = reader.read(buffer)) >= 0) {
+                    for (int i = 0; i < read; i++) {
+                        checksum = 31 * checksum + buffer[i];
+                    }
+                }
+                return checksum;
+            } catch (IOException e) {
+                LOG.warn("Unable to read template {} : {}", templateName, e.getMessage());
+                return UNKNOWN;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    private static final class TemplateState {
+        private final long checked;
+        private final long checksum;
+
+        TemplateState(long checked, long checksum) {
+            this.checked = checked;
+            this.checksum = checksum;
+        }
+    }
+}
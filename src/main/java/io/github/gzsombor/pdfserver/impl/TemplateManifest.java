@@ -0,0 +1,159 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The list of the templates, which were validated at build time by the
+ * {@link TemplateManifestBuilder}, with the SHA-256 hash of their source, and
+ * the stylesheets, fonts and images they depend on. It's loaded at startup, so
+ * the {@link RenderWarmup} can parse all the templates, and load their
+ * resources, before the first request, and the hash of the template is part
+ * of the cache keys, so a changed template never serves a document cached for
+ * its previous version.
+ * <p>
+ * The manifest is a text file, with one template per line:
+ * <code>name=hash dependency1 dependency2 ...</code>
+ *
+ * @author zsombor
+ */
+public final class TemplateManifest {
+
+    /**
+     * The location of the manifest on the classpath.
+     */
+    public static final String DEFAULT_LOCATION = "META-INF/pdfserver/template-manifest.txt";
+
+    private final TreeMap<String, Entry> entries = new TreeMap<>();
+
+    /**
+     * Load the manifest from the default location of the classpath.
+     *
+     * @param classLoader
+     * @return the manifest, or an empty manifest, if it doesn't exist
+     * @throws IOException
+     */
+    public static TemplateManifest load(ClassLoader classLoader) throws IOException {
+        try (InputStream in = classLoader.getResourceAsStream(DEFAULT_LOCATION)) {
+            return in != null ? read(new InputStreamReader(in, StandardCharsets.UTF_8)) : new TemplateManifest();
+        }
+    }
+
+    public static TemplateManifest read(Reader reader) throws IOException {
+        final TemplateManifest manifest = new TemplateManifest();
+        final BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            final String[] values = line.split(" +");
+            final int separator = values[0].lastIndexOf('=');
+            if (separator <= 0) {
+                throw new IOException("Invalid line in the template manifest: " + line);
+            }
+            manifest.add(new Entry(values[0].substring(0, separator), values[0].substring(separator + 1),
+                    Arrays.asList(values).subList(1, values.length)));
+        }
+        return manifest;
+    }
+
+    public void write(Writer writer) throws IOException {
+        writer.write("# pdfserver template manifest: name=sha256 dependencies...\n");
+        for (Entry entry : entries.values()) {
+            writer.write(entry.name);
+            writer.write('=');
+            writer.write(entry.hash);
+            for (String dependency : entry.dependencies) {
+                writer.write(' ');
+                writer.write(dependency);
+            }
+            writer.write('\n');
+        }
+    }
+
+    void add(Entry entry) {
+        entries.put(entry.name, entry);
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public Set<String> getTemplateNames() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * @param templateName
+     * @return the entry of the template, or null, if it's not in the manifest
+     */
+    public Entry get(String templateName) {
+        return entries.get(templateName);
+    }
+
+    /**
+     * @param templateName
+     * @return the hash of the template source, or null, if it's not in the
+     *         manifest
+     */
+    public String getHash(String templateName) {
+        final Entry entry = entries.get(templateName);
+        return entry != null ? entry.hash : null;
+    }
+
+    /**
+     * @return the resources used by any of the templates
+     */
+    public Set<String> getDependencies() {
+        final Set<String> dependencies = new TreeSet<>();
+        for (Entry entry : entries.values()) {
+            dependencies.addAll(entry.dependencies);
+        }
+        return dependencies;
+    }
+
+    /**
+     * A validated template.
+     */
+    public static final class Entry {
+        private final String name;
+        private final String hash;
+        private final List<String> dependencies;
+
+        Entry(String name, String hash, List<String> dependencies) {
+            this.name = name;
+            this.hash = hash;
+            this.dependencies = Collections.unmodifiableList(new ArrayList<>(dependencies));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * @return the URIs of the stylesheets, fonts and images, as they are
+         *         referenced from the template, or from its stylesheets
+         */
+        public List<String> getDependencies() {
+            return dependencies;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.exceptions.TemplateInputException;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.FileTemplateResolver;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xhtmlrenderer.resource.FSEntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Validates the templates at build time, and writes the
+ * {@link TemplateManifest}. Every template under the template directory is
+ * checked, whether it's well formed XHTML, which the PDF renderer can parse,
+ * whether Thymeleaf can parse it, and its expressions, and whether the
+ * stylesheets, fonts and images it references exist. The
+ * <code>classpath:</code> references are looked up in the resource directory.
+ * <p>
+ * It's run from the build, for example with the <code>exec-maven-plugin</code>
+ * in the <code>process-classes</code> phase, with the template directory, the
+ * resource directory and the manifest file as arguments, and optionally the
+ * path prefix of the converter. If a template is broken, it throws an
+ * exception, so the build fails, without exiting the JVM of the build.
+ *
+ * @author zsombor
+ */
+public class TemplateManifestBuilder {
+    private static final Logger LOG = LoggerFactory.getLogger(TemplateManifestBuilder.class);
+
+    private static final Pattern CSS_URL = Pattern.compile("url\\(\\s*['\"]?([^'\")]+?)['\"]?\\s*\\)|@import\\s+['\"]([^'\"]+)['\"]");
+
+    private final Path templateDirectory;
+    private Path resourceDirectory;
+    private String suffix = ".html";
+    private String pathPrefix = "";
+
+    private final List<String> errors = new ArrayList<>();
+
+    /**
+     * @param templateDirectory
+     *            the directory of the templates, the names of the templates
+     *            are relative to it, and to the path prefix, like the names
+     *            returned by
+     *            {@link io.github.gzsombor.pdfserver.api.PdfOutput#getTemplateName()}
+     */
+    public TemplateManifestBuilder(Path templateDirectory) {
+        this.templateDirectory = templateDirectory;
+        this.resourceDirectory = templateDirectory;
+    }
+
+    /**
+     * Set the directory, where the <code>classpath:</code> references are
+     * looked up, usually <code>src/main/resources</code>.
+     *
+     * @param resourceDirectory
+     */
+    public void setResourceDirectory(Path resourceDirectory) {
+        this.resourceDirectory = resourceDirectory;
+    }
+
+    public Path getResourceDirectory() {
+        return resourceDirectory;
+    }
+
+    public void setSuffix(String suffix) {
+        this.suffix = suffix;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * Set the path prefix of the converter, like <code>pdf/</code>. Only the
+     * templates under the prefix are validated, and they are named without
+     * it, the same way as the converter with this prefix names them, while
+     * the fragments they include are still resolved from the template
+     * directory.
+     *
+     * @param pathPrefix
+     */
+    public void setPathPrefix(String pathPrefix) {
+        this.pathPrefix = pathPrefix;
+    }
+
+    public String getPathPrefix() {
+        return pathPrefix;
+    }
+
+    /**
+     * @return the problems found by the last {@link #build()}
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Validate all the templates, and collect them into a manifest. The
+     * broken templates are left out of the manifest, and reported in
+     * {@link #getErrors()}.
+     *
+     * @return the manifest of the valid templates
+     * @throws IOException
+     */
+    public TemplateManifest build() throws IOException {
+        errors.clear();
+        final SpringTemplateEngine engine = createEngine();
+        final DocumentBuilder parser = createParser();
+        final TemplateManifest manifest = new TemplateManifest();
+        final Path prefixDirectory = templateDirectory.resolve(pathPrefix);
+        if (!Files.isDirectory(prefixDirectory)) {
+            errors.add(pathPrefix + " : no template directory " + prefixDirectory);
+            return manifest;
+        }
+        final List<Path> templates;
+        try (Stream<Path> files = Files.walk(prefixDirectory)) {
+            templates = files.filter(file -> Files.isRegularFile(file) && file.getFileName().toString().endsWith(suffix)).sorted().toList();
+        }
+        for (Path template : templates) {
+            final String relative = prefixDirectory.relativize(template).toString().replace('\\', '/');
+            final String name = relative.substring(0, relative.length() - suffix.length());
+            final TemplateManifest.Entry entry = validate(engine, parser, name, template);
+            if (entry != null) {
+                manifest.add(entry);
+            }
+        }
+        return manifest;
+    }
+
+    private TemplateManifest.Entry validate(SpringTemplateEngine engine, DocumentBuilder parser, String name, Path template) throws IOException {
+        final byte[] content = Files.readAllBytes(template);
+        final Document document;
+        try {
+            document = parser.parse(new InputSource(new ByteArrayInputStream(content)));
+        } catch (final SAXParseException e) {
+            errors.add(name + " : not well formed XHTML at line " + e.getLineNumber() + ", " + e.getMessage());
+            return null;
+        } catch (final SAXException e) {
+            errors.add(name + " : not well formed XHTML, " + e.getMessage());
+            return null;
+        }
+        try {
+            engine.process(pathPrefix + name, new Context(), Writer.nullWriter());
+        } catch (final TemplateInputException e) {
+            errors.add(name + " : " + e.getMessage());
+            return null;
+        } catch (final RuntimeException e) {
+            // without the variables most of the templates fail, only the syntax errors are reported
+            final String syntaxError = syntaxError(e);
+            if (syntaxError != null) {
+                errors.add(name + " : " + syntaxError);
+                return null;
+            }
+        }
+        final Set<String> dependencies = new LinkedHashSet<>();
+        final int previousErrors = errors.size();
+        collectDependencies(name, template, document, dependencies);
+        if (errors.size() > previousErrors) {
+            return null;
+        }
+        return new TemplateManifest.Entry(name, sha256(content), new ArrayList<>(dependencies));
+    }
+
+    private void collectDependencies(String name, Path template, Document document, Set<String> dependencies) throws IOException {
+        final NodeList links = document.getElementsByTagName("link");
+        for (int i = 0; i < links.getLength(); i++) {
+            final Element link = (Element) links.item(i);
+            if (isStylesheet(link.getAttribute("rel"))) {
+                addDependency(name, template, link.getAttribute("href"), dependencies);
+            }
+        }
+        final NodeList images = document.getElementsByTagName("img");
+        for (int i = 0; i < images.getLength(); i++) {
+            addDependency(name, template, ((Element) images.item(i)).getAttribute("src"), dependencies);
+        }
+        final NodeList styles = document.getElementsByTagName("style");
+        for (int i = 0; i < styles.getLength(); i++) {
+            for (String uri : cssReferences(styles.item(i).getTextContent())) {
+                addDependency(name, template, uri, dependencies);
+            }
+        }
+    }
+
+    /**
+     * @return true, if the link types of the <code>rel</code> attribute
+     *         contain <code>stylesheet</code>
+     */
+    private static boolean isStylesheet(String rel) {
+        for (String type : rel.trim().split("\\s+")) {
+            if (type.equalsIgnoreCase("stylesheet")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addDependency(String name, Path base, String uri, Set<String> dependencies) throws IOException {
+        if (uri.isEmpty() || uri.startsWith("data:") || uri.contains("${") || uri.contains("@{") || !dependencies.add(uri)) {
+            return;
+        }
+        if (uri.matches("^[a-zA-Z][a-zA-Z0-9+.-]*:.*") && !uri.startsWith("classpath:") && !uri.startsWith("file:")) {
+            // remote resources are only listed
+            return;
+        }
+        final Path file = resolve(base, uri);
+        if (!Files.isRegularFile(file)) {
+            errors.add(name + " : missing resource " + uri + " (" + file + ")");
+            return;
+        }
+        if (file.getFileName().toString().endsWith(".css")) {
+            final String css = Files.readString(file, StandardCharsets.UTF_8);
+            for (String reference : cssReferences(css)) {
+                addDependency(name, base, relativeTo(uri, reference), dependencies);
+            }
+        }
+    }
+
+    private Path resolve(Path base, String uri) {
+        if (uri.startsWith("classpath:")) {
+            return resourceDirectory.resolve(uri.substring("classpath:".length()).replaceFirst("^/+", ""));
+        }
+        if (uri.startsWith("file:")) {
+            return Paths.get(URI.create(uri));
+        }
+        return base.resolveSibling(uri).normalize();
+    }
+
+    /**
+     * Resolve a reference from a stylesheet, the same way as the renderer
+     * does: relative to the URI of the stylesheet.
+     */
+    private static String relativeTo(String stylesheet, String reference) {
+        if (reference.matches("^[a-zA-Z][a-zA-Z0-9+.-]*:.*") || reference.startsWith("/")) {
+            return reference;
+        }
+        final int slash = stylesheet.lastIndexOf('/');
+        final int colon = stylesheet.indexOf(':');
+        final int end = Math.max(slash, colon);
+        return end >= 0 ? stylesheet.substring(0, end + 1) + reference : reference;
+    }
+
+    private static List<String> cssReferences(String css) {
+        final List<String> references = new ArrayList<>();
+        final Matcher matcher = CSS_URL.matcher(css);
+        while (matcher.find()) {
+            references.add(matcher.group(1) != null ? matcher.group(1).trim() : matcher.group(2).trim());
+        }
+        return references;
+    }
+
+    private static String syntaxError(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof org.springframework.expression.ParseException
+                    || (cause.getMessage() != null && cause.getMessage().startsWith("Could not parse as"))) {
+                return cause.getMessage();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The templates are checked without namespaces, as the <code>th</code>
+     * prefix doesn't need to be declared.
+     */
+    private static DocumentBuilder createParser() {
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(false);
+        factory.setValidating(false);
+        try {
+            final DocumentBuilder parser = factory.newDocumentBuilder();
+            parser.setEntityResolver(FSEntityResolver.instance());
+            parser.setErrorHandler(new DefaultHandler() {
+                @Override
+                public void fatalError(SAXParseException e) throws SAXException {
+                    throw e;
+                }
+            });
+            return parser;
+        } catch (final ParserConfigurationException e) {
+            throw new IllegalStateException("Unable to create XML parser: " + e.getMessage(), e);
+        }
+    }
+
+    private SpringTemplateEngine createEngine() {
+        final FileTemplateResolver resolver = new FileTemplateResolver();
+        resolver.setPrefix(templateDirectory.toAbsolutePath().toString() + "/");
+        resolver.setSuffix(suffix);
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        final SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+        return engine;
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Validate the templates, and write the manifest.
+     *
+     * @param args
+     *            the template directory, the resource directory, the
+     *            manifest file, and optionally the path prefix of the
+     *            converter
+     * @throws IOException
+     * @throws IllegalArgumentException
+     *             if the arguments are wrong
+     * @throws IllegalStateException
+     *             if a template is broken, with the problems in the message,
+     *             so the exec plugin fails the build
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 && args.length != 4) {
+            throw new IllegalArgumentException(
+                    "Usage: TemplateManifestBuilder <template directory> <resource directory> <manifest file> [path prefix]");
+        }
+        final TemplateManifestBuilder builder = new TemplateManifestBuilder(Paths.get(args[0]));
+        builder.setResourceDirectory(Paths.get(args[1]));
+        if (args.length == 4) {
+            builder.setPathPrefix(args[3]);
+        }
+        final TemplateManifest manifest = builder.build();
+        if (!builder.getErrors().isEmpty()) {
+            throw new IllegalStateException(builder.getErrors().size() + " broken templates:" + System.lineSeparator()
+                    + String.join(System.lineSeparator(), builder.getErrors()));
+        }
+        final Path output = Paths.get(args[2]);
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            manifest.write(writer);
+        }
+        LOG.info("Validated {} templates into {}", manifest.getTemplateNames().size(), output);
+    }
+}
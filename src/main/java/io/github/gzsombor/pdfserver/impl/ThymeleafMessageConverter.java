@@ -2,35 +2,28 @@ package io.github.gzsombor.pdfserver.impl;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.Duration;
 import java.util.Collection;
-import java.util.Locale;
+import java.util.concurrent.Executor;
 
 import jakarta.inject.Inject;
-import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.springframework.http.HttpInputMessage;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.AbstractHttpMessageConverter;
-import org.thymeleaf.context.Context;
+import org.thymeleaf.context.IContext;
 import org.thymeleaf.spring6.SpringTemplateEngine;
 import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xhtmlrenderer.resource.XMLResource;
 import org.xml.sax.InputSource;
 
-import io.github.gzsombor.pdfserver.api.PdfContextConfigurer;
+import io.github.gzsombor.pdfserver.api.CacheablePdfOutput;
+import io.github.gzsombor.pdfserver.api.MergedPdfOutput;
 import io.github.gzsombor.pdfserver.api.PdfOutput;
 
 /**
@@ -45,9 +38,23 @@ public abstract class ThymeleafMessageConverter extends AbstractHttpMessageConve
 
     private boolean alwaysReload;
 
+    private final TemplateChangeDetector templateChangeDetector = new TemplateChangeDetector(Duration.ofSeconds(1));
+
     private String pathPrefix = "";
-    
-    private XPathFactory xpathFactory = XPathFactory.newInstance();
+
+    private Executor renderExecutor;
+
+    private int renderParallelism = 1;
+
+    private RenderMetrics metrics = RenderMetrics.NONE;
+
+    private FragmentCache fragmentCache;
+
+    private PdfContextFactory contextFactory = new PdfContextFactory();
+
+    private TemplateManifest templateManifest;
+
+    private boolean directDom;
 
     public ThymeleafMessageConverter() {
     }
@@ -60,6 +67,14 @@ public abstract class ThymeleafMessageConverter extends AbstractHttpMessageConve
         super(supportedMediaType);
     }
 
+    /**
+     * Enable reloading the templates, when their source changes. The source of
+     * every cached template, including the included fragments, is checked at
+     * most once in every reload check interval, and only the changed templates
+     * are evicted from the template cache.
+     * 
+     * @param alwaysReload
+     */
     public void setAlwaysReload(boolean alwaysReload) {
         this.alwaysReload = alwaysReload;
     }
@@ -68,6 +83,130 @@ public abstract class ThymeleafMessageConverter extends AbstractHttpMessageConve
         return alwaysReload;
     }
 
+    /**
+     * Set how often the source of a template is checked for changes, when
+     * reloading is enabled. Defaults to one second.
+     * 
+     * @param reloadCheckInterval
+     */
+    public void setReloadCheckInterval(Duration reloadCheckInterval) {
+        this.templateChangeDetector.setCheckInterval(reloadCheckInterval);
+    }
+
+    public Duration getReloadCheckInterval() {
+        return templateChangeDetector.getCheckInterval();
+    }
+
+    /**
+     * Set the executor, which is used to render and parse the fragments of a
+     * {@link io.github.gzsombor.pdfserver.api.MergedPdfOutput} concurrently, for
+     * example a {@link java.util.concurrent.ForkJoinPool} or a virtual thread
+     * per task executor. If it's not set, the fragments are processed one after
+     * the other, on the calling thread.
+     * 
+     * @param renderExecutor
+     */
+    public void setRenderExecutor(Executor renderExecutor) {
+        this.renderExecutor = renderExecutor;
+    }
+
+    public Executor getRenderExecutor() {
+        return renderExecutor;
+    }
+
+    /**
+     * Set the maximum number of fragments, which are rendered concurrently for
+     * one merged document. Only used, if a render executor is set.
+     * 
+     * @param renderParallelism
+     */
+    public void setRenderParallelism(int renderParallelism) {
+        if (renderParallelism < 1) {
+            throw new IllegalArgumentException("renderParallelism must be positive: " + renderParallelism);
+        }
+        this.renderParallelism = renderParallelism;
+    }
+
+    public int getRenderParallelism() {
+        return renderParallelism;
+    }
+
+    /**
+     * Set where the durations of the render stages, and the size of the
+     * generated documents are recorded, for example a
+     * {@link MicrometerRenderMetrics}.
+     * 
+     * @param metrics
+     */
+    public void setMetrics(RenderMetrics metrics) {
+        this.metrics = metrics != null ? metrics : RenderMetrics.NONE;
+    }
+
+    public RenderMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Set the cache for the fragments of the merged documents, so the
+     * {@link CacheablePdfOutput} parts with the same fingerprint are rendered
+     * and parsed only once.
+     * 
+     * @param fragmentCache
+     */
+    public void setFragmentCache(FragmentCache fragmentCache) {
+        this.fragmentCache = fragmentCache;
+    }
+
+    public FragmentCache getFragmentCache() {
+        return fragmentCache;
+    }
+
+    /**
+     * Set the factory of the Thymeleaf contexts, which decides the locale, and
+     * the variables shared by the templates.
+     * 
+     * @param contextFactory
+     */
+    public void setContextFactory(PdfContextFactory contextFactory) {
+        this.contextFactory = contextFactory != null ? contextFactory : new PdfContextFactory();
+    }
+
+    public PdfContextFactory getContextFactory() {
+        return contextFactory;
+    }
+
+    /**
+     * Set the manifest of the templates, validated at build time. The hash of
+     * a template in the manifest is part of the cache keys of its documents,
+     * and the {@link RenderWarmup} parses all the templates of the manifest.
+     * 
+     * @param templateManifest
+     */
+    public void setTemplateManifest(TemplateManifest templateManifest) {
+        this.templateManifest = templateManifest;
+    }
+
+    public TemplateManifest getTemplateManifest() {
+        return templateManifest;
+    }
+
+    /**
+     * Build the DOM of the rendered templates directly from the events of the
+     * template engine, without writing the HTML, and parsing it again. The
+     * {@link DomBuildingDialect} has to be added to the template engine. The
+     * templates, whose rendered text is filtered or checked, are still written
+     * and parsed.
+     * 
+     * @param directDom
+     */
+    public void setDirectDom(boolean directDom) {
+        this.directDom = directDom;
+    }
+
+    public boolean isDirectDom() {
+        return directDom;
+    }
+
     public SpringTemplateEngine getTemplateEngine() {
         return templateEngine;
     }
@@ -95,75 +234,194 @@ public abstract class ThymeleafMessageConverter extends AbstractHttpMessageConve
     }
 
     protected String process(PdfOutput toPdf) {
-        final Context context = new Context(Locale.ENGLISH);
-        context.setVariable("record", toPdf);
-        if (toPdf instanceof PdfContextConfigurer) {
-            ((PdfContextConfigurer) toPdf).init(context);
+        return process(toPdf, contextFactory.createSharedContext(toPdf));
+    }
+
+    protected String process(PdfOutput toPdf, IContext shared) {
+        final StringWriter writer = new StringWriter();
+        process(toPdf, shared, writer);
+        return writer.toString();
+    }
+
+    /**
+     * Render the template of the PdfOutput directly into the given writer.
+     * 
+     * @param toPdf
+     * @param writer
+     */
+    protected void process(PdfOutput toPdf, Writer writer) {
+        process(toPdf, contextFactory.createSharedContext(toPdf), writer);
+    }
+
+    /**
+     * Render the template of the PdfOutput directly into the given writer.
+     * 
+     * @param toPdf
+     * @param shared
+     *            the variables shared by all the fragments of the document
+     * @param writer
+     */
+    protected void process(PdfOutput toPdf, IContext shared, Writer writer) {
+        final IContext context = contextFactory.createContext(toPdf, shared);
+
+        final String templateName = pathPrefix + toPdf.getTemplateName();
+        if (alwaysReload) {
+            templateChangeDetector.checkForChanges(templateEngine, templateName);
         }
 
-        if (templateEngine.isInitialized() && alwaysReload) {
-            templateEngine.getCacheManager().clearAllCaches();
+        final long start = System.nanoTime();
+        templateEngine.process(templateName, context, writer);
+        metrics.recordDuration(RenderMetrics.Stage.TEMPLATE, toPdf.getTemplateName(), System.nanoTime() - start);
+    }
+
+    /**
+     * Render the template of the PdfOutput and parse it into a DOM. The
+     * rendered content goes through {@link #filterContent(Writer)} into a
+     * buffer, which is read by the parser, without creating intermediate
+     * String copies of the whole document.
+     * 
+     * @param toPdf
+     * @return the parsed document
+     */
+    protected Document processToDocument(PdfOutput toPdf) {
+        return processToDocument(toPdf, contextFactory.createSharedContext(toPdf));
+    }
+
+    protected Document processToDocument(PdfOutput toPdf, IContext shared) {
+        if (directDom && !isTextFiltered()) {
+            return DomBuildingDialect.build(() -> process(toPdf, shared, Writer.nullWriter()), toPdf.getTemplateName());
+        }
+        final DocumentBuffer buffer = new DocumentBuffer();
+        try (Writer writer = filterContent(buffer)) {
+            process(toPdf, shared, writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to render " + toPdf.getTemplateName() + ": " + e.getMessage(), e);
         }
+        final long start = System.nanoTime();
+        final Document document = parseHtml(buffer.toReader());
+        metrics.recordDuration(RenderMetrics.Stage.PARSE, toPdf.getTemplateName(), System.nanoTime() - start);
+        return document;
+    }
 
-        return templateEngine.process(pathPrefix + toPdf.getTemplateName(), context);
+    /**
+     * @return true, if the rendered text of the templates is filtered or
+     *         checked, so it has to be written, even if the DOM could be
+     *         built directly.
+     */
+    protected boolean isTextFiltered() {
+        return false;
+    }
+
+    /**
+     * Hook to wrap the writer, which receives the rendered template, in a
+     * streaming filter, before it is parsed.
+     * 
+     * @param writer
+     * @return the writer, where the rendered content should be written
+     */
+    protected Writer filterContent(Writer writer) {
+        return writer;
     }
 
     protected Document parseHtml(String content) {
-        InputSource is = new InputSource(new BufferedReader(new StringReader(content)));
-        Document dom = XMLResource.load(is).getDocument();
-        return dom;
+        return parseHtml(new StringReader(content));
     }
 
-    protected Document processList(Collection<? extends PdfOutput> toPdf) {
+    protected Document parseHtml(Reader content) {
+        InputSource is = new InputSource(new BufferedReader(content));
         try {
-            Document document = null;
-            String documentName = null;
-            XPath path = xpathFactory.newXPath();
-            XPathExpression bodyPath = path.compile("//body");
-            for (PdfOutput pdfFragments : toPdf) {
-                String content = process(pdfFragments);
-                Document fragment = parseHtml(content);
-                if (document == null) {
-                    document = fragment;
-                    documentName = pdfFragments.getTemplateName();
-                } else {
-                    mergeHtml(bodyPath, document, fragment, pdfFragments.getTemplateName());
-                }
-            }
-            return document;
-        } catch (XPathExpressionException e) {
-            throw new RuntimeException("Unable to parse XPath expression:"+e.getMessage(), e);
+            return XmlProcessors.parse(is);
+        } catch (TransformerException e) {
+            throw new PdfRenderException("Unable to parse the rendered template: " + e.getMessageAndLocation(), e);
         }
     }
 
     /**
-     * @param bodyPath
-     * @param document
-     * @param fragment
-     * @throws XPathExpressionException
+     * Render and parse a fragment of a merged document, or copy it from the
+     * fragment cache, if it's already cached.
+     * 
+     * @param toPdf
+     * @param shared
+     *            the variables shared by all the fragments of the document
+     * @return the parsed document, which can be merged into an other document
      */
-    private void mergeHtml(XPathExpression bodyPath, Document document, Document fragment, String templateName) throws XPathExpressionException {
-        Node documentBody = (Node) bodyPath.evaluate(document, XPathConstants.NODE);
-        if (documentBody == null) {
-            throw new IllegalArgumentException("Unable to find 'body' element in : "+documentBody);
+    protected Document processFragment(PdfOutput toPdf, IContext shared) {
+        final String key = fragmentCache != null ? fragmentKey(toPdf, shared) : null;
+        if (key == null) {
+            return processToDocument(toPdf, shared);
         }
-        Node newBody = (Node) bodyPath.evaluate(fragment, XPathConstants.NODE);
-        if (newBody == null) {
-            throw new IllegalArgumentException("Unable to find 'body' element in template: "+templateName);
+        final Document cached = fragmentCache.getDocument(key);
+        if (cached != null) {
+            return cached;
         }
-        NodeList childNodes = newBody.getChildNodes();
-        for (int i=0;i<childNodes.getLength();i++) {
-            Node toAppend = childNodes.item(i).cloneNode(true);
-            document.adoptNode(toAppend);
-            documentBody.appendChild(toAppend);
+        final Document document = processToDocument(toPdf, shared);
+        fragmentCache.putDocument(key, document);
+        return document;
+    }
+
+    /**
+     * @param toPdf
+     * @return the key of the fragment in the fragment cache, or null, if it
+     *         shouldn't be cached.
+     */
+    protected String fragmentKey(PdfOutput toPdf, IContext shared) {
+        if (!(toPdf instanceof CacheablePdfOutput) || toPdf instanceof MergedPdfOutput) {
+            return null;
         }
+        final String fingerprint = ((CacheablePdfOutput) toPdf).getFingerprint();
+        return fingerprint != null ? templateKey(toPdf) + '#' + fingerprint + '#' + contextFactory.getLocale(toPdf, shared) : null;
+    }
+
+    /**
+     * @param toPdf
+     * @return the name of the template, with the hash of its source, if it's
+     *         in the template manifest
+     */
+    protected String templateKey(PdfOutput toPdf) {
+        final String hash = templateManifest != null ? templateManifest.getHash(toPdf.getTemplateName()) : null;
+        return hash != null ? pathPrefix + toPdf.getTemplateName() + '@' + hash : pathPrefix + toPdf.getTemplateName();
+    }
+
+    protected Document processList(Collection<? extends PdfOutput> toPdf) {
+        return processList(toPdf, contextFactory.createSharedContext(null));
+    }
+
+    /**
+     * Render the fragments, and merge them into one document.
+     * 
+     * @param toPdf
+     * @param shared
+     *            the variables shared by all the fragments
+     * @return the merged document
+     */
+    protected Document processList(Collection<? extends PdfOutput> toPdf, IContext shared) {
+        final HtmlMerger merger = new HtmlMerger();
+        final long[] mergeNanos = new long[1];
+        OrderedExecution.forEachOrdered(toPdf, fragment -> processFragment(fragment, shared), renderExecutor, renderParallelism,
+                (PdfOutput pdfFragment, Document fragment) -> {
+                    final long start = System.nanoTime();
+                    merger.append(fragment, pdfFragment.getTemplateName());
+                    mergeNanos[0] += System.nanoTime() - start;
+                });
+        metrics.recordDuration(RenderMetrics.Stage.MERGE, RenderMetrics.MERGED, mergeNanos[0]);
+        metrics.recordFragmentCount(RenderMetrics.MERGED, merger.getFragmentCount());
+        return merger.getDocument();
     }
 
     protected String documentToString(Document document) throws TransformerException {
-        TransformerFactory tf = TransformerFactory.newInstance();
-        Transformer trans = tf.newTransformer();
         StringWriter sw = new StringWriter();
-        trans.transform(new DOMSource(document), new StreamResult(sw));
+        writeDocument(document, sw);
         return sw.toString();
     }
+
+    /**
+     * Serialize the document directly into the given writer.
+     * 
+     * @param document
+     * @param writer
+     * @throws TransformerException
+     */
+    protected void writeDocument(Document document, Writer writer) throws TransformerException {
+        XmlProcessors.write(document, writer);
+    }
 }
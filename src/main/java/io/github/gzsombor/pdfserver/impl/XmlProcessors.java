@@ -0,0 +1,191 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.xhtmlrenderer.resource.FSEntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * Pools of the XML parsers and identity transformers, which are used to parse
+ * the rendered templates, and serialize the documents. The parsers and the
+ * transformers are not thread safe, and looking up their factories goes
+ * through the service loader every time, so they are created once, used by
+ * one thread at a time, and kept for the next document.
+ * <p>
+ * The parsers are configured the same way as
+ * {@link org.xhtmlrenderer.resource.XMLResource} does: not validating,
+ * namespace aware, and the XHTML entities are resolved from the classpath by
+ * the {@link FSEntityResolver}.
+ *
+ * @author zsombor
+ */
+final class XmlProcessors {
+    private static final Logger LOG = LoggerFactory.getLogger(XmlProcessors.class);
+
+    private static final int MAX_IDLE = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+    private static final BlockingQueue<XMLReader> READERS = new ArrayBlockingQueue<>(MAX_IDLE);
+    private static final BlockingQueue<Transformer> TRANSFORMERS = new ArrayBlockingQueue<>(MAX_IDLE);
+
+    private static final SAXParserFactory PARSER_FACTORY = SAXParserFactory.newInstance();
+    private static final TransformerFactory TRANSFORMER_FACTORY = createTransformerFactory();
+
+    private XmlProcessors() {
+    }
+
+    /**
+     * Parse the XHTML content into a DOM.
+     *
+     * @param source
+     * @return the parsed document
+     * @throws TransformerException
+     *             if the content is not well formed
+     */
+    static Document parse(InputSource source) throws TransformerException {
+        XMLReader reader = READERS.poll();
+        if (reader == null) {
+            reader = createReader();
+        }
+        final DOMResult result = new DOMResult();
+        transform(new SAXSource(reader, source), result);
+        // a parser, which failed in the middle of a document is dropped
+        READERS.offer(reader);
+        return (Document) result.getNode();
+    }
+
+    /**
+     * Serialize the document into the writer.
+     *
+     * @param document
+     * @param writer
+     * @throws TransformerException
+     */
+    static void write(Document document, Writer writer) throws TransformerException {
+        transform(new DOMSource(document), new StreamResult(writer), null);
+    }
+
+    /**
+     * Serialize the document as XML, so it can be parsed again, even if the
+     * transformer would choose the HTML output method for it.
+     *
+     * @param document
+     * @param writer
+     * @throws TransformerException
+     */
+    static void writeXml(Document document, Writer writer) throws TransformerException {
+        transform(new DOMSource(document), new StreamResult(writer), "xml");
+    }
+
+    private static void transform(Source source, Result result) throws TransformerException {
+        transform(source, result, null);
+    }
+
+    private static void transform(Source source, Result result, String method) throws TransformerException {
+        Transformer transformer = TRANSFORMERS.poll();
+        if (transformer == null) {
+            transformer = createTransformer();
+        }
+        if (method != null) {
+            transformer.setOutputProperty(OutputKeys.METHOD, method);
+        }
+        transformer.transform(source, result);
+        transformer.reset();
+        TRANSFORMERS.offer(transformer);
+    }
+
+    private static Transformer createTransformer() throws TransformerConfigurationException {
+        synchronized (TRANSFORMER_FACTORY) {
+            return TRANSFORMER_FACTORY.newTransformer();
+        }
+    }
+
+    private static TransformerFactory createTransformerFactory() {
+        final TransformerFactory factory = TransformerFactory.newInstance();
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        } catch (TransformerConfigurationException e) {
+            LOG.warn("Unable to enable secure processing for {} : {}", factory.getClass().getName(), e.getMessage());
+        }
+        return factory;
+    }
+
+    private static XMLReader createReader() throws TransformerException {
+        final XMLReader parser;
+        try {
+            synchronized (PARSER_FACTORY) {
+                parser = PARSER_FACTORY.newSAXParser().getXMLReader();
+            }
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new TransformerConfigurationException("Unable to create XML parser: " + e.getMessage(), e);
+        }
+        final XMLReader reader = new WhitespacePreservingFilter(parser);
+        reader.setEntityResolver(FSEntityResolver.instance());
+        reader.setErrorHandler(LoggingErrorHandler.INSTANCE);
+        try {
+            parser.setFeature("http://xml.org/sax/features/validation", false);
+            parser.setFeature("http://xml.org/sax/features/namespaces", true);
+        } catch (SAXException e) {
+            LOG.warn("Unable to configure the XML parser {} : {}", parser.getClass().getName(), e.getMessage());
+        }
+        return reader;
+    }
+
+    /**
+     * Report the whitespaces between the elements as text, as they can be
+     * significant in the layout.
+     */
+    private static final class WhitespacePreservingFilter extends XMLFilterImpl {
+        WhitespacePreservingFilter(XMLReader parent) {
+            super(parent);
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            characters(ch, start, length);
+        }
+    }
+
+    private static final class LoggingErrorHandler implements ErrorHandler {
+        private static final LoggingErrorHandler INSTANCE = new LoggingErrorHandler();
+
+        @Override
+        public void warning(SAXParseException exception) {
+            LOG.debug("Warning at line {}: {}", exception.getLineNumber(), exception.getMessage());
+        }
+
+        @Override
+        public void error(SAXParseException exception) {
+            LOG.debug("Error at line {}: {}", exception.getLineNumber(), exception.getMessage());
+        }
+
+        @Override
+        public void fatalError(SAXParseException exception) throws SAXParseException {
+            throw exception;
+        }
+    }
+}
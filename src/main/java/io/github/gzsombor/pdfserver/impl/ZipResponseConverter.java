@@ -0,0 +1,109 @@
+package io.github.gzsombor.pdfserver.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import jakarta.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.context.IContext;
+
+import io.github.gzsombor.pdfserver.api.MergedPdfOutput;
+import io.github.gzsombor.pdfserver.api.PdfOutput;
+
+/**
+ * Writes the parts of a {@link MergedPdfOutput} as separate PDFs into a ZIP
+ * archive, instead of merging them into one document. Every part becomes an
+ * entry, named after its output name, or <code>document-&lt;index&gt;</code>,
+ * if it has none. The parts are rendered by the {@link PdfResponseConverter},
+ * with its templates, caches and admission control, concurrently, if a render
+ * executor is set on this converter. The entries are written in order,
+ * directly into the response, so only <code>renderParallelism</code> rendered
+ * parts are kept in memory, not the whole archive. The entries are rendered
+ * with the locale and the shared variables of the archive. With admission
+ * control, the archive is admitted as one document, before the response is
+ * started.
+ *
+ * @author zsombor
+ */
+@Component
+public class ZipResponseConverter extends ThymeleafMessageConverter {
+    private static final Logger LOG = LoggerFactory.getLogger(ZipResponseConverter.class);
+
+    public static final MediaType APPLICATION_ZIP = new MediaType("application", "zip");
+
+    @Inject
+    private PdfResponseConverter pdfConverter;
+
+    public ZipResponseConverter() {
+        super(APPLICATION_ZIP);
+    }
+
+    /**
+     * @param pdfConverter
+     *            renders the parts of the archives
+     */
+    public ZipResponseConverter(PdfResponseConverter pdfConverter) {
+        this();
+        this.pdfConverter = pdfConverter;
+    }
+
+    public void setPdfConverter(PdfResponseConverter pdfConverter) {
+        this.pdfConverter = pdfConverter;
+    }
+
+    public PdfResponseConverter getPdfConverter() {
+        return pdfConverter;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return MergedPdfOutput.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected void writeInternal(PdfOutput t, HttpOutputMessage outputMessage) throws IOException {
+        if (pdfConverter == null) {
+            throw new IllegalStateException("No PdfResponseConverter is set to render " + t.getOutputName());
+        }
+        LOG.debug("rendering archive  : {}", t.getOutputName());
+        // the whole archive is admitted once, before the response is started
+        try (RenderAdmission.Permit permit = pdfConverter.admit(t)) {
+            outputMessage.getHeaders().setContentType(APPLICATION_ZIP);
+            if (t.getOutputName() != null) {
+                outputMessage.getHeaders().set("Content-Disposition", "attachment; filename=\"" + t.getOutputName().replace('"', '_') + ".zip\"");
+            }
+            // the locale and the variables of the archive are shared by the entries
+            final IContext shared = pdfConverter.getContextFactory().createSharedContext(t);
+            final ZipOutputStream zip = new ZipOutputStream(outputMessage.getBody());
+            final Set<String> names = new HashSet<>();
+            OrderedExecution.forEachOrdered(((MergedPdfOutput) t).getIndividualPdfs(), part -> renderEntry(part, shared), getRenderExecutor(),
+                    getRenderParallelism(), (PdfOutput part, byte[] content) -> {
+                        zip.putNextEntry(new ZipEntry(PdfSink.uniqueFileName(names, part)));
+                        zip.write(content);
+                        zip.closeEntry();
+                    });
+            zip.finish();
+            zip.flush();
+            if (permit != null) {
+                permit.succeeded();
+            }
+        }
+    }
+
+    private byte[] renderEntry(PdfOutput part, IContext shared) {
+        try {
+            return pdfConverter.renderToByteArray(part, shared);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package io.github.gzsombor.pdfserver.test;
+
+import io.github.gzsombor.pdfserver.impl.AsyncPdfRenderer;
+import io.github.gzsombor.pdfserver.test.config.TestConfig;
+import io.github.gzsombor.pdfserver.test.helper.TestPdfResponseConverter;
+import io.github.gzsombor.pdfserver.test.model.ReportSection;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.web.server.ResponseStatusException;
+import org.thymeleaf.context.Context;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Integration tests for rendering PDFs asynchronously, on a size limited
+ * executor.
+ */
+@SpringJUnitConfig(TestConfig.class)
+public class AsyncPdfGenerationIntegrationTest {
+
+    @Autowired
+    private TestPdfResponseConverter pdfResponseConverter;
+
+    private AsyncPdfRenderer asyncRenderer;
+
+    @BeforeEach
+    public void setUp() {
+        asyncRenderer = new AsyncPdfRenderer(pdfResponseConverter, 1, 1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        asyncRenderer.shutdown();
+    }
+
+    @Test
+    public void testRenderResponseAsynchronously() throws Exception {
+        // Given: A report section
+        ReportSection section = new ReportSection("1", "Async", "Rendered on the render executor");
+
+        // When: The response is rendered asynchronously
+        ResponseEntity<byte[]> response = asyncRenderer.renderResponse(section).get(30, TimeUnit.SECONDS);
+
+        // Then: It contains the PDF with the headers set
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_PDF);
+        assertThat(response.getHeaders().getContentLength()).isEqualTo(response.getBody().length);
+        try (PDDocument document = Loader.loadPDF(response.getBody())) {
+            assertThat(new PDFTextStripper().getText(document)).contains("Rendered on the render executor");
+        }
+    }
+
+    @Test
+    public void testRejectWhenQueueIsFull() throws Exception {
+        // Given: The only render thread is busy, and the queue is full
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<byte[]> running = asyncRenderer.render(new BlockingSection(started, release));
+        assertThat(started.await(30, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<byte[]> queued = asyncRenderer.render(new ReportSection("2", "Queued", "Waiting for a thread"));
+
+        // When: One more document is submitted
+        CompletableFuture<byte[]> rejected = asyncRenderer.render(new ReportSection("3", "Rejected", "No room"));
+
+        // Then: It is rejected immediately with 503
+        assertThat(rejected).isCompletedExceptionally();
+        assertThatThrownBy(rejected::get).isInstanceOf(ExecutionException.class)
+                .cause().isInstanceOf(ResponseStatusException.class)
+                .satisfies(e -> assertThat(((ResponseStatusException) e).getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+
+        // And: The accepted documents are still rendered
+        release.countDown();
+        assertThat(running.get(30, TimeUnit.SECONDS)).isNotEmpty();
+        assertThat(queued.get(30, TimeUnit.SECONDS)).isNotEmpty();
+    }
+
+    /**
+     * Section, which blocks the render thread until it is released.
+     */
+    private static class BlockingSection extends ReportSection {
+        private final CountDownLatch started;
+        private final CountDownLatch release;
+
+        BlockingSection(CountDownLatch started, CountDownLatch release) {
+            super("1", "Blocking", "Blocks the render thread");
+            this.started = started;
+            this.release = release;
+        }
+
+        @Override
+        public void init(Context thymeleafContext) {
+            started.countDown();
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.init(thymeleafContext);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package io.github.gzsombor.pdfserver.test;
+
+import io.github.gzsombor.pdfserver.api.PdfOutput;
+import io.github.gzsombor.pdfserver.impl.BatchRenderer;
+import io.github.gzsombor.pdfserver.impl.BatchRenderer.BatchResult;
+import io.github.gzsombor.pdfserver.impl.PdfSink;
+import io.github.gzsombor.pdfserver.impl.RendererPool;
+import io.github.gzsombor.pdfserver.test.config.TestConfig;
+import io.github.gzsombor.pdfserver.test.helper.TestPdfResponseConverter;
+import io.github.gzsombor.pdfserver.test.model.ReportSection;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for rendering many documents in one batch.
+ */
+@SpringJUnitConfig(TestConfig.class)
+public class BatchRenderingIntegrationTest {
+
+    @Autowired
+    private SpringTemplateEngine templateEngine;
+
+    @TempDir
+    Path tempDir;
+
+    private ExecutorService executor;
+
+    private BatchRenderer batchRenderer;
+
+    @BeforeEach
+    public void setUp() {
+        TestPdfResponseConverter converter = new TestPdfResponseConverter();
+        converter.setTemplateEngine(templateEngine);
+        converter.setRendererPool(new RendererPool(4));
+        executor = Executors.newFixedThreadPool(4);
+        batchRenderer = new BatchRenderer(converter, executor, 4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testBatchIntoDirectoryContinuesAfterFailure() throws Exception {
+        // Given: 20 documents, and a broken one in the middle
+        List<PdfOutput> outputs = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            outputs.add(new ReportSection(String.valueOf(i), "Invoice " + i, "Content of invoice " + i));
+            if (i == 10) {
+                outputs.add(new ReportSection("broken", "Broken", "Missing template") {
+                    @Override
+                    public String getTemplateName() {
+                        return "missing-template";
+                    }
+                });
+            }
+        }
+
+        // When: The batch is written into a directory
+        BatchResult result = batchRenderer.render(outputs, PdfSink.toDirectory(tempDir));
+
+        // Then: Every other document is generated, and the failure is reported
+        assertThat(result.getSucceeded()).isEqualTo(20);
+        assertThat(result.getFailed()).isEqualTo(1);
+        assertThat(result.getFailures().get(0).getOutput().getOutputName()).isEqualTo("section-broken");
+        assertThat(result.getThroughput()).isPositive();
+        try (var files = Files.list(tempDir)) {
+            assertThat(files).hasSize(20);
+        }
+        try (PDDocument document = Loader.loadPDF(tempDir.resolve("section-7.pdf").toFile())) {
+            assertThat(new PDFTextStripper().getText(document)).contains("Content of invoice 7");
+        }
+    }
+
+    @Test
+    public void testBatchIntoZipKeepsOrder() throws Exception {
+        // Given: A stream of documents
+        ByteArrayOutputStream zipContent = new ByteArrayOutputStream();
+
+        // When: The batch is written into a zip stream
+        BatchResult result;
+        try (ZipOutputStream zip = new ZipOutputStream(zipContent)) {
+            result = batchRenderer.render(IntStream.rangeClosed(1, 12)
+                .mapToObj(i -> new ReportSection(String.valueOf(i), "Invoice " + i, "Content " + i)), PdfSink.toZip(zip));
+        }
+
+        // Then: The entries follow the order of the batch
+        assertThat(result.getSucceeded()).isEqualTo(12);
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(zipContent.toByteArray()))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                names.add(entry.getName());
+            }
+        }
+        assertThat(names).hasSize(12).startsWith("section-1.pdf", "section-2.pdf").endsWith("section-12.pdf");
+    }
+
+    @Test
+    public void testDuplicateNamesAreMadeUnique() throws Exception {
+        // Given: Documents with the same output name, and one without a name
+        List<PdfOutput> outputs = List.of(
+            new ReportSection("1", "First", "First of the same name"),
+            new ReportSection("1", "Second", "Second of the same name"),
+            new ReportSection("2", "Unnamed", "Without a name") {
+                @Override
+                public String getOutputName() {
+                    return null;
+                }
+            }
+        );
+        Path directory = tempDir.resolve("documents");
+
+        // When: The batch is written into a directory, and into a zip
+        BatchResult directoryResult = batchRenderer.render(outputs, PdfSink.toDirectory(directory));
+        ByteArrayOutputStream zipContent = new ByteArrayOutputStream();
+        BatchResult zipResult;
+        try (ZipOutputStream zip = new ZipOutputStream(zipContent)) {
+            zipResult = batchRenderer.render(outputs, PdfSink.toZip(zip));
+        }
+
+        // Then: No document is overwritten, or rejected as a duplicate entry
+        assertThat(directoryResult.getFailed()).isZero();
+        assertThat(zipResult.getFailed()).isZero();
+        try (var files = Files.list(directory)) {
+            assertThat(files.map(file -> file.getFileName().toString()))
+                .containsExactlyInAnyOrder("section-1.pdf", "section-1-2.pdf", "document-3.pdf");
+        }
+        try (PDDocument document = Loader.loadPDF(directory.resolve("section-1.pdf").toFile())) {
+            assertThat(new PDFTextStripper().getText(document)).contains("First of the same name");
+        }
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(zipContent.toByteArray()))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                names.add(entry.getName());
+            }
+        }
+        assertThat(names).containsExactly("section-1.pdf", "section-1-2.pdf", "document-3.pdf");
+    }
+
+    @Test
+    public void testStreamIsClosed() {
+        // Given: A stream, which records its closing
+        AtomicBoolean closed = new AtomicBoolean();
+        Stream<ReportSection> outputs = Stream.of(new ReportSection("1", "Streamed", "Content")).onClose(() -> closed.set(true));
+
+        // When: The batch is rendered
+        BatchResult result = batchRenderer.render(outputs, (output, content) -> { });
+
+        // Then: The stream is closed by the renderer
+        assertThat(result.getSucceeded()).isEqualTo(1);
+        assertThat(closed).isTrue();
+    }
+}
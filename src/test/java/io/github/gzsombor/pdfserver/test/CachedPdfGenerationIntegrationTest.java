@@ -0,0 +1,201 @@
+package io.github.gzsombor.pdfserver.test;
+
+import io.github.gzsombor.pdfserver.api.BasicMergedPdfOutput;
+import io.github.gzsombor.pdfserver.api.PdfOutput;
+import io.github.gzsombor.pdfserver.impl.FragmentCache;
+import io.github.gzsombor.pdfserver.impl.MergeStrategy;
+import io.github.gzsombor.pdfserver.impl.PdfResultCache;
+import io.github.gzsombor.pdfserver.impl.TemplateManifest;
+import io.github.gzsombor.pdfserver.test.config.TestConfig;
+import io.github.gzsombor.pdfserver.test.helper.TestPdfResponseConverter;
+import io.github.gzsombor.pdfserver.test.model.CacheableReportSection;
+import io.github.gzsombor.pdfserver.test.model.ReportSection;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for caching the generated PDF documents.
+ */
+@SpringJUnitConfig(TestConfig.class)
+public class CachedPdfGenerationIntegrationTest {
+
+    @Autowired
+    private SpringTemplateEngine templateEngine;
+
+    @TempDir
+    Path tempDir;
+
+    private TestPdfResponseConverter cachingConverter;
+
+    @BeforeEach
+    public void setUp() {
+        cachingConverter = new TestPdfResponseConverter();
+        cachingConverter.setTemplateEngine(templateEngine);
+    }
+
+    @Test
+    public void testSameFingerprintIsServedFromCache() throws Exception {
+        // Given: A converter with a result cache
+        PdfResultCache cache = new PdfResultCache(10_000_000, Duration.ofMinutes(5));
+        cachingConverter.setResultCache(cache);
+
+        // When: The same document is requested twice
+        byte[] first = render(new CacheableReportSection("1", "Terms", "Terms and conditions", "1"));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        HttpOutputMessage outputMessage = createHttpOutputMessage(outputStream);
+        cachingConverter.writeToOutput(new CacheableReportSection("1", "Terms", "Terms and conditions", "1"), outputMessage);
+        byte[] second = outputStream.toByteArray();
+
+        // Then: The second one is the cached copy of the first one
+        assertThat(second).isEqualTo(first);
+        assertThat(outputMessage.getHeaders().getContentLength()).isEqualTo(first.length);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+
+        // And: A new fingerprint is rendered again
+        byte[] updated = render(new CacheableReportSection("1", "Terms", "Updated terms", "2"));
+        assertThat(cache.getMissCount()).isEqualTo(2);
+        try (PDDocument document = Loader.loadPDF(updated)) {
+            assertThat(new PDFTextStripper().getText(document)).contains("Updated terms");
+        }
+    }
+
+    @Test
+    public void testEvictedDocumentIsSpilledToDisk() throws Exception {
+        // Given: A cache, which can't keep anything in memory
+        PdfResultCache cache = new PdfResultCache(1, Duration.ofMinutes(5));
+        cache.setSpillDirectory(tempDir.resolve("cache"));
+        cachingConverter.setResultCache(cache);
+
+        // When: The same document is requested twice
+        byte[] first = render(new CacheableReportSection("2", "Appendix", "Appendix content", "1"));
+        byte[] second = render(new CacheableReportSection("2", "Appendix", "Appendix content", "1"));
+
+        // Then: The second one is read back from the disk
+        assertThat(second).isEqualTo(first);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        try (var files = Files.list(tempDir.resolve("cache"))) {
+            assertThat(files.count()).isEqualTo(1);
+        }
+
+        // And: Clearing the cache removes the spilled documents too
+        cache.clear();
+        try (var files = Files.list(tempDir.resolve("cache"))) {
+            assertThat(files.count()).isZero();
+        }
+    }
+
+    @Test
+    public void testChangedTemplateIsNotServedFromCache() throws Exception {
+        // Given: A converter with a result cache, and a template manifest
+        PdfResultCache cache = new PdfResultCache(10_000_000, Duration.ofMinutes(5));
+        cachingConverter.setResultCache(cache);
+        cachingConverter.setTemplateManifest(TemplateManifest.read(new StringReader("report-section=aaaa\n")));
+        render(new CacheableReportSection("1", "Terms", "Terms and conditions", "1"));
+
+        // When: The template is changed, and the same document is requested
+        cachingConverter.setTemplateManifest(TemplateManifest.read(new StringReader("report-section=bbbb\n")));
+        render(new CacheableReportSection("1", "Terms", "Terms and conditions", "1"));
+
+        // Then: It's rendered again
+        assertThat(cache.getHitCount()).isZero();
+        assertThat(cache.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testUnchangedFragmentsAreReused() throws Exception {
+        // Given: A converter with a fragment cache
+        FragmentCache cache = new FragmentCache(100);
+        cachingConverter.setFragmentCache(cache);
+
+        // When: Two reports are generated with the same boilerplate, and different data
+        byte[] first = render(report("First data"));
+        byte[] second = render(report("Second data"));
+
+        // Then: The boilerplate is parsed only once, and both reports are complete
+        assertThat(cache.getMissCount()).isEqualTo(2);
+        assertThat(cache.getHitCount()).isEqualTo(2);
+        assertThat(text(first)).contains("Terms and conditions", "First data", "Appendix content");
+        assertThat(text(second)).contains("Terms and conditions", "Second data", "Appendix content")
+                .doesNotContain("First data");
+    }
+
+    @Test
+    public void testConcatenatedPagesAreReused() throws Exception {
+        // Given: A converter concatenating the parts, with a fragment cache
+        FragmentCache cache = new FragmentCache(100);
+        cachingConverter.setFragmentCache(cache);
+        cachingConverter.setMergeStrategy(MergeStrategy.CONCATENATE);
+
+        // When: Two reports are generated with the same boilerplate, and different data
+        render(report("First data"));
+        long missesAfterFirst = cache.getMissCount();
+        byte[] second = render(report("Second data"));
+
+        // Then: The pages of the boilerplate are reused, as they start on the same page
+        assertThat(cache.getHitCount()).isEqualTo(2);
+        assertThat(cache.getMissCount()).isEqualTo(missesAfterFirst);
+        try (PDDocument document = Loader.loadPDF(second)) {
+            assertThat(document.getNumberOfPages()).isEqualTo(3);
+            assertThat(new PDFTextStripper().getText(document)).contains("Terms and conditions", "Second data", "Appendix content");
+        }
+    }
+
+    private BasicMergedPdfOutput report(String data) {
+        List<PdfOutput> sections = List.of(
+                new CacheableReportSection("1", "Terms", "Terms and conditions", "1"),
+                new ReportSection("2", "Data", data),
+                new CacheableReportSection("3", "Appendix", "Appendix content", "1"));
+        return new BasicMergedPdfOutput("report", sections);
+    }
+
+    private String text(byte[] pdf) throws Exception {
+        try (PDDocument document = Loader.loadPDF(pdf)) {
+            return new PDFTextStripper().getText(document);
+        }
+    }
+
+    private byte[] render(PdfOutput section) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        cachingConverter.writeToOutput(section, createHttpOutputMessage(outputStream));
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Helper method to create a mock HttpOutputMessage for testing.
+     */
+    private HttpOutputMessage createHttpOutputMessage(ByteArrayOutputStream outputStream) {
+        return new HttpOutputMessage() {
+            private final HttpHeaders headers = new HttpHeaders();
+
+            @Override
+            public OutputStream getBody() {
+                return outputStream;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        };
+    }
+}
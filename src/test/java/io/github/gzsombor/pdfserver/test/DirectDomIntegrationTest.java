@@ -0,0 +1,141 @@
+package io.github.gzsombor.pdfserver.test;
+
+import io.github.gzsombor.pdfserver.api.BasicMergedPdfOutput;
+import io.github.gzsombor.pdfserver.api.PdfOutput;
+import io.github.gzsombor.pdfserver.impl.DomBuildingDialect;
+import io.github.gzsombor.pdfserver.impl.RenderLimits;
+import io.github.gzsombor.pdfserver.test.config.TestConfig;
+import io.github.gzsombor.pdfserver.test.helper.TestPdfResponseConverter;
+import io.github.gzsombor.pdfserver.test.model.InvoiceData;
+import io.github.gzsombor.pdfserver.test.model.InvoiceData.InvoiceItem;
+import io.github.gzsombor.pdfserver.test.model.ReportSection;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+import org.w3c.dom.Document;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for building the DOM of the templates directly from the
+ * events of the template engine.
+ */
+@SpringJUnitConfig(TestConfig.class)
+public class DirectDomIntegrationTest {
+
+    @Autowired
+    private ClassLoaderTemplateResolver templateResolver;
+
+    private SpringTemplateEngine templateEngine;
+
+    private TestPdfResponseConverter parsingConverter;
+
+    private TestPdfResponseConverter directConverter;
+
+    @BeforeEach
+    public void setUp() {
+        templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(templateResolver);
+        templateEngine.addDialect(new DomBuildingDialect());
+        parsingConverter = new TestPdfResponseConverter();
+        parsingConverter.setTemplateEngine(templateEngine);
+        directConverter = new TestPdfResponseConverter();
+        directConverter.setTemplateEngine(templateEngine);
+        directConverter.setDirectDom(true);
+    }
+
+    @Test
+    public void testDirectDomIsTheSameAsTheParsedDocument() {
+        // Given: An invoice, and a merged report with escaped characters
+        PdfOutput invoice = new InvoiceData(
+            "INV-2025-300",
+            LocalDate.of(2025, 11, 18),
+            "Árvíztűrő & Sons <Ltd.>",
+            "1 Test Street",
+            Arrays.asList(new InvoiceItem("Direct DOM", 2, 15.00))
+        );
+        PdfOutput report = new BasicMergedPdfOutput("report", List.of(
+            new ReportSection("1", "First & Foremost", "Less < more"),
+            new ReportSection("2", "Second", "\"Quoted\" content")
+        ));
+
+        for (PdfOutput output : List.of(invoice, report)) {
+            // When: The document is built directly, and by parsing the written template
+            Document direct = directConverter.buildDocument(output);
+            Document parsed = parsingConverter.buildDocument(output);
+
+            // Then: The two documents are equal
+            assertThat(direct.getDocumentElement().isEqualNode(parsed.getDocumentElement())).isTrue();
+        }
+        Document direct = directConverter.buildDocument(invoice);
+        assertThat(direct.getDocumentElement().getTextContent()).contains("Árvíztűrő & Sons <Ltd.>");
+    }
+
+    @Test
+    public void testMergedPdfFromDirectDom() throws Exception {
+        // Given: A merged report
+        PdfOutput report = new BasicMergedPdfOutput("report", List.of(
+            new ReportSection("1", "First", "Built without parsing"),
+            new ReportSection("2", "Second", "Also without parsing")
+        ));
+
+        // When: The PDF is rendered from the directly built DOM
+        byte[] pdf = directConverter.renderToByteArray(report);
+
+        // Then: Both sections are in the PDF
+        try (PDDocument document = Loader.loadPDF(pdf)) {
+            String text = new PDFTextStripper().getText(document);
+            assertThat(text).contains("Built without parsing");
+            assertThat(text).contains("Also without parsing");
+        }
+    }
+
+    @Test
+    public void testWrittenTemplatesAreNotChanged() {
+        // Given: The template engine with the dialect
+        Context context = new Context();
+        context.setVariable("sectionNumber", "7");
+        context.setVariable("title", "Written");
+        context.setVariable("content", "Fish & chips");
+
+        // When: A template is processed into a String
+        String html = templateEngine.process("report-section", context);
+
+        // Then: It is written as usual
+        assertThat(html).contains("<div class=\"section-title\">Written</div>");
+        assertThat(html).contains("Fish &amp; chips");
+    }
+
+    @Test
+    public void testRenderTimeLimitIsCheckedByTheWriter() throws Exception {
+        // Given: A converter with direct DOM, on an engine without the dialect, and a render time limit
+        SpringTemplateEngine plainEngine = new SpringTemplateEngine();
+        plainEngine.setTemplateResolver(templateResolver);
+        TestPdfResponseConverter converter = new TestPdfResponseConverter();
+        converter.setTemplateEngine(plainEngine);
+        converter.setDirectDom(true);
+        RenderLimits limits = new RenderLimits();
+        limits.setMaxRenderTime(Duration.ofMinutes(1));
+        converter.setRenderLimits(limits);
+
+        // When: A section is rendered
+        byte[] pdf = converter.renderToByteArray(new ReportSection("1", "Limited", "Written and parsed"));
+
+        // Then: The template is written through the limited writer, and parsed
+        try (PDDocument document = Loader.loadPDF(pdf)) {
+            assertThat(new PDFTextStripper().getText(document)).contains("Written and parsed");
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.gzsombor.pdfserver.test;
+
+import io.github.gzsombor.pdfserver.api.BasicMergedPdfOutput;
+import io.github.gzsombor.pdfserver.api.PdfOutput;
+import io.github.gzsombor.pdfserver.test.config.TestConfig;
+import io.github.gzsombor.pdfserver.test.helper.TestHtmlMessageConverter;
+import io.github.gzsombor.pdfserver.test.model.InvoiceData;
+import io.github.gzsombor.pdfserver.test.model.InvoiceData.InvoiceItem;
+import io.github.gzsombor.pdfserver.test.model.ReportSection;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for HTML generation, which writes the rendered templates
+ * directly into the response.
+ */
+@SpringJUnitConfig(TestConfig.class)
+public class HtmlGenerationIntegrationTest {
+
+    @Autowired
+    private TestHtmlMessageConverter htmlMessageConverter;
+
+    @Test
+    public void testGenerateHtmlFromInvoiceTemplate() throws Exception {
+        // Given: Invoice data
+        InvoiceData invoiceData = new InvoiceData(
+            "INV-2025-100",
+            LocalDate.of(2025, 11, 18),
+            "Árvíztűrő Ltd.",
+            "1 Test Street",
+            Arrays.asList(new InvoiceItem("HTML Preview", 1, 10.00))
+        );
+
+        // When: Generate HTML
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        HttpOutputMessage outputMessage = createHttpOutputMessage(outputStream);
+        htmlMessageConverter.writeToOutput(invoiceData, outputMessage);
+
+        // Then: The UTF-8 encoded HTML is written to the response
+        assertThat(outputMessage.getHeaders().getContentType()).isEqualTo(MediaType.TEXT_HTML);
+        String html = outputStream.toString(StandardCharsets.UTF_8);
+        assertThat(html).contains("INV-2025-100");
+        assertThat(html).contains("Árvíztűrő Ltd.");
+        assertThat(html).contains("HTML Preview");
+    }
+
+    @Test
+    public void testGenerateMergedHtml() throws Exception {
+        // Given: Multiple report sections
+        List<PdfOutput> sections = Arrays.asList(
+            new ReportSection("1", "First", "First content"),
+            new ReportSection("2", "Second", "Second content")
+        );
+
+        // When: Generate merged HTML
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        htmlMessageConverter.writeToOutput(new BasicMergedPdfOutput("merged", sections), createHttpOutputMessage(outputStream));
+
+        // Then: Both sections are in one document, in order
+        String html = outputStream.toString(StandardCharsets.UTF_8);
+        assertThat(html).containsOnlyOnce("<body");
+        assertThat(html.indexOf("First content")).isLessThan(html.indexOf("Second content"));
+    }
+
+    @Test
+    public void testConcurrentMergesShareTheParsers() throws Exception {
+        // Given: Merged documents rendered from many threads at the same time
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<String>> tasks = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            final int document = i;
+            tasks.add(() -> {
+                List<PdfOutput> sections = Arrays.asList(
+                    new ReportSection("1", "First", "First content of " + document),
+                    new ReportSection("2", "Second", "Second content of " + document)
+                );
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                htmlMessageConverter.writeToOutput(new BasicMergedPdfOutput("merged", sections), createHttpOutputMessage(outputStream));
+                return outputStream.toString(StandardCharsets.UTF_8);
+            });
+        }
+
+        // When: All of them are parsed, merged and serialized
+        List<Future<String>> results;
+        try {
+            results = executor.invokeAll(tasks);
+        } finally {
+            executor.shutdown();
+        }
+
+        // Then: Every document contains only its own content
+        for (int i = 0; i < results.size(); i++) {
+            String html = results.get(i).get();
+            assertThat(html).containsOnlyOnce("<body");
+            assertThat(html).contains("First content of " + i + "<", "Second content of " + i + "<");
+        }
+    }
+
+    /**
+     * Helper method to create a mock HttpOutputMessage for testing.
+     */
+    private HttpOutputMessage createHttpOutputMessage(ByteArrayOutputStream outputStream) {
+        return new HttpOutputMessage() {
+            private final HttpHeaders headers = new HttpHeaders();
+
+            @Override
+            public OutputStream getBody() {
+                return outputStream;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        };
+    }
+}
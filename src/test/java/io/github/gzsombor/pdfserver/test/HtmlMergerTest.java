@@ -0,0 +1,76 @@
+package io.github.gzsombor.pdfserver.test;
+
+import io.github.gzsombor.pdfserver.impl.HtmlMerger;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests merging the body of many HTML fragments into one document.
+ */
+public class HtmlMergerTest {
+
+    @Test
+    public void testMergeThousandsOfSectionsInOrder() throws Exception {
+        // Given: Many fragments with two paragraphs each
+        HtmlMerger merger = new HtmlMerger();
+        Document first = createFragment(0);
+        Document last = null;
+
+        // When: Merge them
+        merger.append(first, "section");
+        for (int i = 1; i < 5000; i++) {
+            last = createFragment(i);
+            merger.append(last, "section");
+        }
+
+        // Then: Every paragraph is moved into the first document, in order
+        assertThat(merger.getDocument()).isSameAs(first);
+        assertThat(merger.getFragmentCount()).isEqualTo(5000);
+        NodeList paragraphs = first.getElementsByTagName("p");
+        assertThat(paragraphs.getLength()).isEqualTo(10000);
+        for (int i = 0; i < 5000; i++) {
+            assertThat(paragraphs.item(2 * i).getTextContent()).isEqualTo("title " + i);
+            assertThat(paragraphs.item(2 * i + 1).getTextContent()).isEqualTo("content " + i);
+            assertThat(paragraphs.item(2 * i).getOwnerDocument()).isSameAs(first);
+        }
+        assertThat(last.getElementsByTagName("body").item(0).hasChildNodes()).isFalse();
+    }
+
+    @Test
+    public void testMissingBodyIsReported() throws Exception {
+        HtmlMerger merger = new HtmlMerger();
+        merger.append(createFragment(0), "section");
+
+        Document withoutBody = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        withoutBody.appendChild(withoutBody.createElement("html"));
+
+        assertThatThrownBy(() -> merger.append(withoutBody, "broken"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("broken");
+    }
+
+    private static Document createFragment(int index) throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element html = document.createElement("html");
+        document.appendChild(html);
+        Element body = document.createElement("body");
+        html.appendChild(body);
+        body.appendChild(paragraph(document, "title " + index));
+        body.appendChild(paragraph(document, "content " + index));
+        return document;
+    }
+
+    private static Node paragraph(Document document, String text) {
+        Element paragraph = document.createElement("p");
+        paragraph.setTextContent(text);
+        return paragraph;
+    }
+}
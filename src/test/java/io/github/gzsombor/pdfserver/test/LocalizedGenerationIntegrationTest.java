@@ -0,0 +1,195 @@
+package io.github.gzsombor.pdfserver.test;
+
+import io.github.gzsombor.pdfserver.api.BasicMergedPdfOutput;
+import io.github.gzsombor.pdfserver.api.CacheablePdfOutput;
+import io.github.gzsombor.pdfserver.api.PdfContextConfigurer;
+import io.github.gzsombor.pdfserver.api.PdfOutput;
+import io.github.gzsombor.pdfserver.impl.PdfContextFactory;
+import io.github.gzsombor.pdfserver.impl.PdfResultCache;
+import io.github.gzsombor.pdfserver.test.config.TestConfig;
+import io.github.gzsombor.pdfserver.test.helper.TestHtmlMessageConverter;
+import io.github.gzsombor.pdfserver.test.helper.TestPdfResponseConverter;
+import io.github.gzsombor.pdfserver.test.model.LocalizedReportSection;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the locale and the shared variables of the templates.
+ */
+@SpringJUnitConfig(TestConfig.class)
+public class LocalizedGenerationIntegrationTest {
+
+    @Autowired
+    private SpringTemplateEngine templateEngine;
+
+    private TestHtmlMessageConverter htmlMessageConverter;
+
+    private PdfContextFactory contextFactory;
+
+    @BeforeEach
+    public void setUp() {
+        contextFactory = new PdfContextFactory();
+        htmlMessageConverter = new TestHtmlMessageConverter();
+        htmlMessageConverter.setTemplateEngine(templateEngine);
+        htmlMessageConverter.setContextFactory(contextFactory);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        LocaleContextHolder.resetLocaleContext();
+    }
+
+    @Test
+    public void testLocaleFromDocumentAndRequest() throws Exception {
+        // Given: A German request, and a section in French
+        contextFactory.setRequestLocale(true);
+        LocaleContextHolder.setLocale(Locale.GERMAN);
+        List<PdfOutput> sections = Arrays.asList(
+            new LocalizedReportSection("1", "French", Locale.FRENCH),
+            new LocalizedReportSection("2", "Request", null)
+        );
+
+        // When: Generate the merged document
+        String html = render(new BasicMergedPdfOutput("merged", sections));
+
+        // Then: The French section uses its own locale, the other one the request locale
+        assertThat(html.indexOf("Language: <span>fr</span>")).isLessThan(html.indexOf("Language: <span>de</span>"));
+        assertThat(html.indexOf("Language: <span>fr</span>")).isGreaterThanOrEqualTo(0);
+    }
+
+    @Test
+    public void testDefaultLocaleWithoutRequestLocale() throws Exception {
+        // Given: A German request, which is not used by the factory
+        contextFactory.setDefaultLocale(Locale.ITALIAN);
+        LocaleContextHolder.setLocale(Locale.GERMAN);
+
+        // When: Generate a section without a locale
+        String html = render(new LocalizedReportSection("1", "Default", null));
+
+        // Then: The default locale is used
+        assertThat(html).contains("Language: <span>it</span>");
+    }
+
+    @Test
+    public void testSharedVariablesAreVisibleInEveryFragment() throws Exception {
+        // Given: Variables shared by the converter, and by the merged document
+        contextFactory.setSharedVariables(Map.of("company", "ACME Ltd.", "title", "Hidden title"));
+        List<PdfOutput> sections = Arrays.asList(
+            new LocalizedReportSection("1", "First", null),
+            new LocalizedReportSection("2", "Second", null)
+        );
+
+        // When: Generate the merged document
+        String html = render(new DatedReport(sections));
+
+        // Then: Every fragment sees the shared variables, and its own variables hide the shared ones
+        assertThat(html.split("Issued by: <span>ACME Ltd.</span>", -1)).hasSize(3);
+        assertThat(html.split("Report date: <span>2025-12-01</span>", -1)).hasSize(3);
+        assertThat(html).contains(">First<", ">Second<").doesNotContain("Hidden title");
+    }
+
+    @Test
+    public void testResultCacheKeepsTheDocumentPerLocale() throws Exception {
+        // Given: A PDF converter with a result cache, using the locale of the request
+        contextFactory.setRequestLocale(true);
+        TestPdfResponseConverter pdfConverter = new TestPdfResponseConverter();
+        pdfConverter.setTemplateEngine(templateEngine);
+        pdfConverter.setContextFactory(contextFactory);
+        pdfConverter.setResultCache(new PdfResultCache(10 * 1024 * 1024, Duration.ofMinutes(10)));
+
+        // When: The same section is rendered for a German, and then for a French request
+        LocaleContextHolder.setLocale(Locale.GERMAN);
+        byte[] german = pdfConverter.renderToByteArray(new CacheableLocalizedSection());
+        LocaleContextHolder.setLocale(Locale.FRENCH);
+        byte[] french = pdfConverter.renderToByteArray(new CacheableLocalizedSection());
+
+        // Then: Every locale gets its own document
+        assertThat(pdfText(german)).containsPattern("Language: \\.?de");
+        assertThat(pdfText(french)).containsPattern("Language: \\.?fr");
+
+        // And: The German document is served from the cache for the next German request
+        LocaleContextHolder.setLocale(Locale.GERMAN);
+        assertThat(pdfConverter.renderToByteArray(new CacheableLocalizedSection())).isEqualTo(german);
+    }
+
+    private static String pdfText(byte[] pdf) throws Exception {
+        try (PDDocument document = Loader.loadPDF(pdf)) {
+            return new PDFTextStripper().getText(document);
+        }
+    }
+
+    private String render(PdfOutput output) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        htmlMessageConverter.writeToOutput(output, createHttpOutputMessage(outputStream));
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Section without its own locale, with the same fingerprint every time.
+     */
+    private static class CacheableLocalizedSection extends LocalizedReportSection implements CacheablePdfOutput {
+        CacheableLocalizedSection() {
+            super("1", "Cached", null);
+        }
+
+        @Override
+        public String getFingerprint() {
+            return "cached-1";
+        }
+    }
+
+    /**
+     * Merged report, which sets the date of the report for all the sections.
+     */
+    private static class DatedReport extends BasicMergedPdfOutput implements PdfContextConfigurer {
+        DatedReport(List<? extends PdfOutput> pdfs) {
+            super("dated-report", pdfs);
+        }
+
+        @Override
+        public void init(Context thymeleafContext) {
+            thymeleafContext.setVariable("reportDate", "2025-12-01");
+        }
+    }
+
+    /**
+     * Helper method to create a mock HttpOutputMessage for testing.
+     */
+    private HttpOutputMessage createHttpOutputMessage(ByteArrayOutputStream outputStream) {
+        return new HttpOutputMessage() {
+            private final HttpHeaders headers = new HttpHeaders();
+
+            @Override
+            public OutputStream getBody() {
+                return outputStream;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        };
+    }
+}
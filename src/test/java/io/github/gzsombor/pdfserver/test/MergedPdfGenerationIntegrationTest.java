@@ -3,8 +3,10 @@ package io.github.gzsombor.pdfserver.test;
 import io.github.gzsombor.pdfserver.api.BasicMergedPdfOutput;
 import io.github.gzsombor.pdfserver.api.MergedPdfOutput;
 import io.github.gzsombor.pdfserver.api.PdfOutput;
+import io.github.gzsombor.pdfserver.impl.MergeStrategy;
 import io.github.gzsombor.pdfserver.test.config.TestConfig;
 import io.github.gzsombor.pdfserver.test.helper.TestPdfResponseConverter;
+import io.github.gzsombor.pdfserver.test.model.NumberedReportSection;
 import io.github.gzsombor.pdfserver.test.model.ReportSection;
 import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -14,6 +16,7 @@ import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpOutputMessage;
 import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.thymeleaf.spring6.SpringTemplateEngine;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -21,8 +24,11 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -36,6 +42,9 @@ public class MergedPdfGenerationIntegrationTest {
     @Autowired
     private TestPdfResponseConverter pdfResponseConverter;
 
+    @Autowired
+    private SpringTemplateEngine templateEngine;
+
     @TempDir
     Path tempDir;
 
@@ -150,6 +159,109 @@ public class MergedPdfGenerationIntegrationTest {
         assertThat(mergedReport.getIndividualPdfs()).hasSize(1);
     }
 
+    @Test
+    public void testGenerateMergedPdfWithParallelRendering() throws Exception {
+        // Given: Many sections and a converter rendering them concurrently
+        List<PdfOutput> sections = new ArrayList<>();
+        for (int i = 1; i <= 40; i++) {
+            sections.add(new ReportSection(String.valueOf(i), "Title " + i, "Content of part " + i + "."));
+        }
+        MergedPdfOutput mergedReport = new BasicMergedPdfOutput("parallel-report", sections);
+
+        TestPdfResponseConverter parallelConverter = new TestPdfResponseConverter();
+        parallelConverter.setTemplateEngine(templateEngine);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        parallelConverter.setRenderExecutor(executor);
+        parallelConverter.setRenderParallelism(4);
+
+        // When: Generate merged PDF
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            parallelConverter.writeToOutput(mergedReport, createHttpOutputMessage(outputStream));
+        } finally {
+            executor.shutdown();
+        }
+
+        // Then: Every section is present, in the original order
+        try (PDDocument document = Loader.loadPDF(outputStream.toByteArray())) {
+            String text = new PDFTextStripper().getText(document);
+            int previous = -1;
+            for (int i = 1; i <= 40; i++) {
+                int position = text.indexOf("Content of part " + i + ".");
+                assertThat(position).as("section %d", i).isGreaterThan(previous);
+                previous = position;
+            }
+        }
+    }
+
+    @Test
+    public void testConcatenateSectionsWithContinuousPageNumbers() throws Exception {
+        // Given: Sections of two pages each, rendered as separate PDFs concurrently
+        List<PdfOutput> sections = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            sections.add(new NumberedReportSection(String.valueOf(i), "Title " + i, "Content of part " + i + "."));
+        }
+        MergedPdfOutput mergedReport = new BasicMergedPdfOutput("concatenated-report", sections);
+
+        TestPdfResponseConverter concatenatingConverter = new TestPdfResponseConverter();
+        concatenatingConverter.setTemplateEngine(templateEngine);
+        concatenatingConverter.setMergeStrategy(MergeStrategy.CONCATENATE);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        concatenatingConverter.setRenderExecutor(executor);
+        concatenatingConverter.setRenderParallelism(3);
+
+        // When: Generate merged PDF
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            concatenatingConverter.writeToOutput(mergedReport, createHttpOutputMessage(outputStream));
+        } finally {
+            executor.shutdown();
+        }
+
+        // Then: The sections follow each other, and the page numbers continue
+        try (PDDocument document = Loader.loadPDF(outputStream.toByteArray())) {
+            assertThat(document.getNumberOfPages()).isEqualTo(12);
+            PDFTextStripper stripper = new PDFTextStripper();
+            for (int page = 1; page <= 12; page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                String text = stripper.getText(document);
+                int section = (page + 1) / 2;
+                assertThat(text).contains("Page " + page);
+                assertThat(text).contains(page % 2 == 1 ? "Content of part " + section + "." : "Continued section " + section);
+            }
+        }
+    }
+
+    @Test
+    public void testConcatenateSectionsWithOwnPageNumbers() throws Exception {
+        // Given: Sections of two pages each, numbered separately
+        List<PdfOutput> sections = Arrays.asList(
+            new NumberedReportSection("1", "First", "Content of part 1."),
+            new NumberedReportSection("2", "Second", "Content of part 2.")
+        );
+        MergedPdfOutput mergedReport = new BasicMergedPdfOutput("separate-report", sections);
+
+        TestPdfResponseConverter concatenatingConverter = new TestPdfResponseConverter();
+        concatenatingConverter.setTemplateEngine(templateEngine);
+        concatenatingConverter.setMergeStrategy(MergeStrategy.CONCATENATE);
+        concatenatingConverter.setContinuousPageNumbering(false);
+
+        // When: Generate merged PDF
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        concatenatingConverter.writeToOutput(mergedReport, createHttpOutputMessage(outputStream));
+
+        // Then: The numbering restarts with every section
+        try (PDDocument document = Loader.loadPDF(outputStream.toByteArray())) {
+            assertThat(document.getNumberOfPages()).isEqualTo(4);
+            PDFTextStripper stripper = new PDFTextStripper();
+            stripper.setStartPage(3);
+            stripper.setEndPage(3);
+            String text = stripper.getText(document);
+            assertThat(text).contains("Content of part 2.").contains("Page 1");
+        }
+    }
+
     /**
      * Helper method to create a mock HttpOutputMessage for testing.
      */
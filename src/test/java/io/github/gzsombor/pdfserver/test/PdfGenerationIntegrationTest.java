@@ -1,9 +1,13 @@
 package io.github.gzsombor.pdfserver.test;
 
+import io.github.gzsombor.pdfserver.impl.CharacterMappingWriter;
+import io.github.gzsombor.pdfserver.impl.RendererPool;
+import io.github.gzsombor.pdfserver.impl.ResourceCache;
 import io.github.gzsombor.pdfserver.test.config.TestConfig;
 import io.github.gzsombor.pdfserver.test.helper.TestPdfResponseConverter;
 import io.github.gzsombor.pdfserver.test.model.InvoiceData;
 import io.github.gzsombor.pdfserver.test.model.InvoiceData.InvoiceItem;
+import io.github.gzsombor.pdfserver.test.model.ReportSection;
 import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
@@ -12,6 +16,8 @@ import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpOutputMessage;
 import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.xhtmlrenderer.pdf.ITextRenderer;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -38,6 +44,9 @@ public class PdfGenerationIntegrationTest {
     @Autowired
     private TestPdfResponseConverter pdfResponseConverter;
 
+    @Autowired
+    private SpringTemplateEngine templateEngine;
+
     @TempDir
     Path tempDir;
 
@@ -171,6 +180,118 @@ public class PdfGenerationIntegrationTest {
         }
     }
 
+    @Test
+    public void testGeneratePdfWithPooledRenderer() throws Exception {
+        // Given: A converter reusing a single renderer
+        TestPdfResponseConverter pooledConverter = new TestPdfResponseConverter();
+        pooledConverter.setTemplateEngine(templateEngine);
+        RendererPool rendererPool = new RendererPool(1);
+        pooledConverter.setRendererPool(rendererPool);
+
+        InvoiceData first = new InvoiceData("INV-2025-010", LocalDate.of(2025, 11, 20), "First Customer",
+            "1 First Street", Arrays.asList(new InvoiceItem("First Item", 2, 10.00)));
+        InvoiceData second = new InvoiceData("INV-2025-011", LocalDate.of(2025, 11, 21), "Second Customer",
+            "2 Second Street", Arrays.asList(new InvoiceItem("Second Item", 3, 20.00)));
+
+        // When: Generate two PDFs after each other
+        ByteArrayOutputStream firstOutput = new ByteArrayOutputStream();
+        pooledConverter.writeToOutput(first, createHttpOutputMessage(firstOutput));
+        assertThat(rendererPool.getIdleCount()).isEqualTo(1);
+        ByteArrayOutputStream secondOutput = new ByteArrayOutputStream();
+        pooledConverter.writeToOutput(second, createHttpOutputMessage(secondOutput));
+
+        // Then: The reused renderer doesn't leak content between the documents
+        assertThat(rendererPool.getIdleCount()).isEqualTo(1);
+        try (PDDocument document = Loader.loadPDF(secondOutput.toByteArray())) {
+            String text = new PDFTextStripper().getText(document);
+            assertThat(text).contains("INV-2025-011");
+            assertThat(text).contains("Second Item");
+            assertThat(text).doesNotContain("First Customer");
+        }
+    }
+
+    @Test
+    public void testReleasedRendererDropsTheDocument() throws Exception {
+        // Given: A pooled converter, which rendered an invoice
+        TestPdfResponseConverter pooledConverter = new TestPdfResponseConverter();
+        pooledConverter.setTemplateEngine(templateEngine);
+        RendererPool rendererPool = new RendererPool(1);
+        pooledConverter.setRendererPool(rendererPool);
+        InvoiceData invoice = new InvoiceData("INV-2025-012", LocalDate.of(2025, 11, 22), "Retained Customer",
+            "3 Third Street", Arrays.asList(new InvoiceItem("Retained Item", 1, 30.00)));
+        pooledConverter.writeToOutput(invoice, createHttpOutputMessage(new ByteArrayOutputStream()));
+
+        // When: The idle renderer is taken from the pool
+        ITextRenderer renderer = rendererPool.acquire();
+
+        // Then: It doesn't keep the document, or the boxes of the invoice
+        assertThat(renderer.getDocument().getDocumentElement().getTextContent()).isEmpty();
+        assertThat(renderer.getRootBox().getLayer().getPages()).hasSize(1);
+        assertThat(rendererPool.getIdleCount()).isZero();
+    }
+
+    @Test
+    public void testGeneratePdfWithStreamingContentFilter() throws Exception {
+        // Given: A converter replacing a character, which is not displayable in the PDF
+        TestPdfResponseConverter filteringConverter = new TestPdfResponseConverter();
+        filteringConverter.setTemplateEngine(templateEngine);
+        filteringConverter.setContentFilter(writer -> new CharacterMappingWriter(writer, c -> c == 'ő' ? 'ö' : c));
+
+        InvoiceData invoiceData = new InvoiceData("INV-2025-012", LocalDate.of(2025, 11, 22), "Kőszegi Kft.",
+            "3 Fő utca, Budapest", Arrays.asList(new InvoiceItem("Filtered Item", 1, 42.00)));
+
+        // When: Generate PDF
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        filteringConverter.writeToOutput(invoiceData, createHttpOutputMessage(outputStream));
+
+        // Then: The content went through the filter
+        try (PDDocument document = Loader.loadPDF(outputStream.toByteArray())) {
+            String text = new PDFTextStripper().getText(document);
+            assertThat(text).contains("Köszegi Kft.");
+            assertThat(text).contains("3 Fö utca, Budapest");
+            assertThat(text).contains("Filtered Item");
+        }
+    }
+
+    @Test
+    public void testStylesheetAndImageAreSharedBetweenRenderers() throws Exception {
+        // Given: A converter creating a new renderer for every document, with a shared resource cache
+        TestPdfResponseConverter cachingConverter = new TestPdfResponseConverter();
+        cachingConverter.setTemplateEngine(templateEngine);
+        ResourceCache resourceCache = new ResourceCache(1_000_000);
+        cachingConverter.setResourceCache(resourceCache);
+
+        // When: Generate two PDFs using the same stylesheet and logo
+        long firstMisses = 0;
+        long firstHits = 0;
+        for (int i = 1; i <= 2; i++) {
+            ReportSection section = new ReportSection(String.valueOf(i), "Branded", "Branded content " + i) {
+                @Override
+                public String getTemplateName() {
+                    return "branded-section";
+                }
+            };
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            cachingConverter.writeToOutput(section, createHttpOutputMessage(outputStream));
+
+            try (PDDocument document = Loader.loadPDF(outputStream.toByteArray())) {
+                String text = new PDFTextStripper().getText(document);
+                assertThat(text).contains("Corporate Brand");
+                assertThat(text).contains("Branded content " + i);
+            }
+            if (i == 1) {
+                firstMisses = resourceCache.getMissCount();
+                firstHits = resourceCache.getHitCount();
+            }
+        }
+
+        // Then: The first document loaded both resources, the second one got them from the cache
+        assertThat(firstMisses).isGreaterThanOrEqualTo(2);
+        assertThat(resourceCache.getMissCount()).isEqualTo(firstMisses);
+        assertThat(resourceCache.getHitCount()).isGreaterThanOrEqualTo(firstHits + 2);
+        assertThat(resourceCache.getSize()).isGreaterThan(0);
+    }
+
     @Test
     public void testOutputNameGeneration() {
         // Given: Invoice data
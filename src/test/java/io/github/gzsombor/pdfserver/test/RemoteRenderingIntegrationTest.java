@@ -0,0 +1,208 @@
+package io.github.gzsombor.pdfserver.test;
+
+import io.github.gzsombor.pdfserver.impl.PdfRenderException;
+import io.github.gzsombor.pdfserver.impl.RemoteRenderBackend;
+import io.github.gzsombor.pdfserver.impl.RenderBackendUnavailableException;
+import io.github.gzsombor.pdfserver.impl.RenderLimits;
+import io.github.gzsombor.pdfserver.impl.RenderWorker;
+import io.github.gzsombor.pdfserver.test.config.TestConfig;
+import io.github.gzsombor.pdfserver.test.helper.TestPdfResponseConverter;
+import io.github.gzsombor.pdfserver.test.model.InvoiceData;
+import io.github.gzsombor.pdfserver.test.model.InvoiceData.InvoiceItem;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.w3c.dom.Document;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Integration tests for rendering the documents on render workers, started
+ * in the test.
+ */
+@SpringJUnitConfig(TestConfig.class)
+public class RemoteRenderingIntegrationTest {
+
+    @Autowired
+    private SpringTemplateEngine templateEngine;
+
+    private TestPdfResponseConverter converter;
+
+    private final List<RenderWorker> workers = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        converter = new TestPdfResponseConverter();
+        converter.setTemplateEngine(templateEngine);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        workers.forEach(RenderWorker::stop);
+    }
+
+    @Test
+    public void testDocumentsAreBalancedBetweenWorkers() throws Exception {
+        // Given: Two render workers
+        RenderWorker first = startWorker(new TestPdfResponseConverter());
+        RenderWorker second = startWorker(new TestPdfResponseConverter());
+        converter.setRenderBackend(new RemoteRenderBackend(List.of(first.getUri(), second.getUri())));
+
+        // When: Four invoices are rendered
+        List<byte[]> documents = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            documents.add(converter.renderToByteArray(createInvoice("INV-REMOTE-" + i, 3)));
+        }
+
+        // Then: Every worker rendered two of them
+        assertThat(first.getRenderedCount()).isEqualTo(2);
+        assertThat(second.getRenderedCount()).isEqualTo(2);
+        try (PDDocument document = Loader.loadPDF(documents.get(3))) {
+            String text = new PDFTextStripper().getText(document);
+            assertThat(text).contains("INV-REMOTE-4", "Item 3");
+        }
+    }
+
+    @Test
+    public void testUnavailableWorkersFallBackToLocalRendering() throws Exception {
+        // Given: A backend, whose only worker is stopped
+        RenderWorker stopped = startWorker(new TestPdfResponseConverter());
+        URI uri = stopped.getUri();
+        stopped.stop();
+        RemoteRenderBackend backend = new RemoteRenderBackend(List.of(uri));
+        backend.setConnectTimeout(Duration.ofMillis(500));
+        converter.setRenderBackend(backend);
+
+        // When: An invoice is rendered
+        byte[] pdf = converter.renderToByteArray(createInvoice("INV-FALLBACK", 1));
+
+        // Then: It's rendered locally, and the worker is skipped for a while
+        try (PDDocument document = Loader.loadPDF(pdf)) {
+            assertThat(new PDFTextStripper().getText(document)).contains("INV-FALLBACK");
+        }
+        assertThat(backend.getAvailableWorkerCount()).isZero();
+
+        // And: Without the fallback, the failure is reported
+        converter.setLocalFallback(false);
+        assertThatThrownBy(() -> converter.renderToByteArray(createInvoice("INV-NO-FALLBACK", 1)))
+            .isInstanceOf(RenderBackendUnavailableException.class);
+    }
+
+    @Test
+    public void testRejectedDocumentIsNotRenderedAgain() throws Exception {
+        // Given: A worker with a page limit
+        TestPdfResponseConverter limitedConverter = new TestPdfResponseConverter();
+        RenderLimits limits = new RenderLimits();
+        limits.setMaxPages(1);
+        limitedConverter.setRenderLimits(limits);
+        RenderWorker worker = startWorker(limitedConverter);
+        converter.setRenderBackend(new RemoteRenderBackend(List.of(worker.getUri())));
+
+        // When/Then: A document over the limit is reported, instead of rendering it locally
+        assertThatThrownBy(() -> converter.renderToByteArray(createInvoice("INV-LARGE", 200)))
+            .isInstanceOf(PdfRenderException.class)
+            .isNotInstanceOf(RenderBackendUnavailableException.class)
+            .hasMessageContaining("more than 1 pages");
+    }
+
+    @Test
+    public void testLayoutFailureDoesNotSkipTheWorkers() throws Exception {
+        // Given: Two workers, which fail in the layout of every document
+        RenderWorker first = startWorker(new FailingConverter());
+        RenderWorker second = startWorker(new FailingConverter());
+        RemoteRenderBackend backend = new RemoteRenderBackend(List.of(first.getUri(), second.getUri()));
+        converter.setRenderBackend(backend);
+
+        // When/Then: The document is reported, without trying it on the other worker, or locally
+        assertThatThrownBy(() -> converter.renderToByteArray(createInvoice("INV-BROKEN", 1)))
+            .isInstanceOf(PdfRenderException.class)
+            .isNotInstanceOf(RenderBackendUnavailableException.class)
+            .hasMessageContaining("Broken layout");
+
+        // And: The workers are still available for the other documents
+        assertThat(backend.getAvailableWorkerCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testStalledResponseIsTimedOut() throws Exception {
+        // Given: A worker, which sends the headers, and then stalls
+        HttpServer stalled = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        CountDownLatch release = new CountDownLatch(1);
+        stalled.createContext("/render", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(200, 1000);
+            exchange.getResponseBody().write("%PDF-".getBytes(StandardCharsets.US_ASCII));
+            exchange.getResponseBody().flush();
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        stalled.start();
+        try {
+            RemoteRenderBackend backend = new RemoteRenderBackend(
+                List.of(URI.create("http://127.0.0.1:" + stalled.getAddress().getPort() + "/render")));
+            backend.setRequestTimeout(Duration.ofMillis(500));
+            converter.setRenderBackend(backend);
+
+            // When: An invoice is rendered
+            byte[] pdf = converter.renderToByteArray(createInvoice("INV-STALLED", 1));
+
+            // Then: The transfer is abandoned in time, and the invoice is rendered locally
+            try (PDDocument document = Loader.loadPDF(pdf)) {
+                assertThat(new PDFTextStripper().getText(document)).contains("INV-STALLED");
+            }
+            assertThat(backend.getAvailableWorkerCount()).isZero();
+        } finally {
+            release.countDown();
+            stalled.stop(0);
+        }
+    }
+
+    private RenderWorker startWorker(TestPdfResponseConverter workerConverter) throws Exception {
+        RenderWorker worker = new RenderWorker(workerConverter, new InetSocketAddress("127.0.0.1", 0));
+        worker.start();
+        workers.add(worker);
+        return worker;
+    }
+
+    private InvoiceData createInvoice(String number, int itemCount) {
+        List<InvoiceItem> items = new ArrayList<>();
+        for (int i = 1; i <= itemCount; i++) {
+            items.add(new InvoiceItem("Item " + i, 1, 10.00));
+        }
+        return new InvoiceData(number, LocalDate.of(2025, 11, 18), "Acme Corporation", "123 Main Street", items);
+    }
+
+    /**
+     * Converter, which fails in the layout with an unexpected exception.
+     */
+    private static class FailingConverter extends TestPdfResponseConverter {
+        @Override
+        public void renderDocument(Document document, String templateName, OutputStream out) {
+            throw new IllegalStateException("Broken layout of " + templateName);
+        }
+    }
+}
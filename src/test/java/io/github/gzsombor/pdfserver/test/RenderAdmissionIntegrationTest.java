@@ -0,0 +1,255 @@
+package io.github.gzsombor.pdfserver.test;
+
+import io.github.gzsombor.pdfserver.api.BasicMergedPdfOutput;
+import io.github.gzsombor.pdfserver.api.PdfOutput;
+import io.github.gzsombor.pdfserver.impl.RenderAdmission;
+import io.github.gzsombor.pdfserver.test.config.TestConfig;
+import io.github.gzsombor.pdfserver.test.helper.TestPdfResponseConverter;
+import io.github.gzsombor.pdfserver.test.helper.TestZipResponseConverter;
+import io.github.gzsombor.pdfserver.test.model.ReportSection;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.web.server.ResponseStatusException;
+import org.thymeleaf.context.Context;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Integration tests for the admission control of the rendered documents.
+ */
+@SpringJUnitConfig(TestConfig.class)
+public class RenderAdmissionIntegrationTest {
+
+    @Autowired
+    private TestPdfResponseConverter pdfResponseConverter;
+
+    @Autowired
+    private TestZipResponseConverter zipResponseConverter;
+
+    @AfterEach
+    public void tearDown() {
+        pdfResponseConverter.setAdmission(null);
+    }
+
+    @Test
+    public void testBulkReportsDoNotBlockInteractiveDocuments() throws Exception {
+        // Given: One place in every lane, and a merged report of 30 sections holding the bulk lane
+        RenderAdmission admission = new RenderAdmission(1, 1);
+        pdfResponseConverter.setAdmission(admission);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<ReportSection> blockingSections = sections(29);
+        blockingSections.add(0, new BlockingSection(started, release));
+        PdfOutput blockingReport = new BasicMergedPdfOutput("blocking", blockingSections);
+        assertThat(admission.laneOf(blockingReport)).isEqualTo(RenderAdmission.Lane.BULK);
+        CompletableFuture<byte[]> running = CompletableFuture.supplyAsync(() -> renderUnchecked(blockingReport));
+        assertThat(started.await(30, TimeUnit.SECONDS)).isTrue();
+
+        // When: An other report, and a single section are rendered
+        PdfOutput report = new BasicMergedPdfOutput("report", sections(30));
+        ReportSection receipt = new ReportSection("1", "Receipt", "Not waiting for the reports");
+
+        // Then: The report is rejected immediately with 503
+        assertThatThrownBy(() -> render(report)).isInstanceOf(ResponseStatusException.class)
+                .satisfies(e -> assertThat(((ResponseStatusException) e).getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+        assertThat(admission.getRejectedCount(RenderAdmission.Lane.BULK)).isEqualTo(1);
+
+        // And: The single section is rendered in the interactive lane
+        try (PDDocument document = Loader.loadPDF(render(receipt))) {
+            assertThat(new PDFTextStripper().getText(document)).contains("Not waiting for the reports");
+        }
+        assertThat(admission.getRejectedCount(RenderAdmission.Lane.INTERACTIVE)).isZero();
+
+        // And: The accepted report is still rendered, and frees its lane
+        release.countDown();
+        assertThat(running.get(30, TimeUnit.SECONDS)).isNotEmpty();
+        assertThat(admission.getActiveCount(RenderAdmission.Lane.BULK)).isZero();
+    }
+
+    @Test
+    public void testCostIsEstimatedFromPastTimings() throws Exception {
+        // Given: The fragments are estimated to take one second, and reports over two seconds are bulk
+        RenderAdmission admission = new RenderAdmission(2, 1);
+        admission.setDefaultFragmentCost(Duration.ofSeconds(1));
+        admission.setSmoothing(1);
+        pdfResponseConverter.setAdmission(admission);
+        PdfOutput report = new BasicMergedPdfOutput("report", sections(3));
+        assertThat(admission.laneOf(report)).isEqualTo(RenderAdmission.Lane.BULK);
+
+        // When: A section is rendered in less than a second
+        render(new ReportSection("1", "Fast", "Rendered quickly"));
+
+        // Then: The estimate of the template is learned, and the report is interactive
+        assertThat(admission.estimateNanos(report)).isLessThan(Duration.ofSeconds(2).toNanos());
+        assertThat(admission.laneOf(report)).isEqualTo(RenderAdmission.Lane.INTERACTIVE);
+    }
+
+    @Test
+    public void testFailedRenderIsNotRecorded() {
+        // Given: The fragments are estimated to take one second, and every sample replaces the estimate
+        RenderAdmission admission = new RenderAdmission(1, 1);
+        admission.setDefaultFragmentCost(Duration.ofSeconds(1));
+        admission.setSmoothing(1);
+        pdfResponseConverter.setAdmission(admission);
+        PdfOutput missing = new ReportSection("1", "Missing", "Without a template") {
+            @Override
+            public String getTemplateName() {
+                return "no-such-template";
+            }
+        };
+
+        // When: The document fails quickly
+        assertThatThrownBy(() -> render(missing)).isNotInstanceOf(ResponseStatusException.class);
+
+        // Then: The estimate is not changed, and the place is freed
+        assertThat(admission.estimateNanos(missing)).isEqualTo(Duration.ofSeconds(1).toNanos());
+        assertThat(admission.getActiveCount(RenderAdmission.Lane.INTERACTIVE)).isZero();
+    }
+
+    @Test
+    public void testArchiveIsAdmittedOnceBeforeTheResponse() throws Exception {
+        // Given: One place in every lane, with the interactive lane taken, and an archive of 30 sections
+        RenderAdmission admission = new RenderAdmission(1, 1);
+        pdfResponseConverter.setAdmission(admission);
+        PdfOutput archive = new BasicMergedPdfOutput("archive", sections(30));
+        assertThat(admission.laneOf(archive)).isEqualTo(RenderAdmission.Lane.BULK);
+        ByteArrayOutputStream rejectedBody = new ByteArrayOutputStream();
+        HttpOutputMessage rejectedMessage = createHttpOutputMessage(rejectedBody);
+        try (RenderAdmission.Permit interactive = admission.admit(new ReportSection("1", "Receipt", "Holds the lane"))) {
+            assertThat(interactive.getLane()).isEqualTo(RenderAdmission.Lane.INTERACTIVE);
+
+            // When: The archive is written, while the bulk lane is also taken
+            try (RenderAdmission.Permit bulk = admission.admit(archive)) {
+                assertThat(bulk.getLane()).isEqualTo(RenderAdmission.Lane.BULK);
+                assertThatThrownBy(() -> zipResponseConverter.writeToOutput(archive, rejectedMessage))
+                        .isInstanceOf(ResponseStatusException.class);
+            }
+
+            // Then: The rejected response is not started
+            assertThat(rejectedBody.size()).isZero();
+            assertThat(rejectedMessage.getHeaders().getContentType()).isNull();
+
+            // And: When the bulk lane is free, the archive is admitted once, not every entry in the interactive lane
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            zipResponseConverter.writeToOutput(archive, createHttpOutputMessage(body));
+            int entries = 0;
+            try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(body.toByteArray()))) {
+                while (zip.getNextEntry() != null) {
+                    entries++;
+                }
+            }
+            assertThat(entries).isEqualTo(30);
+            assertThat(admission.getRejectedCount(RenderAdmission.Lane.INTERACTIVE)).isZero();
+            assertThat(admission.getActiveCount(RenderAdmission.Lane.BULK)).isZero();
+        }
+    }
+
+    @Test
+    public void testBatchRenderingIsNotAdmitted() throws Exception {
+        // Given: Both lanes are full
+        RenderAdmission admission = new RenderAdmission(1, 1);
+        pdfResponseConverter.setAdmission(admission);
+        ReportSection section = new ReportSection("1", "Batch", "Rendered by a batch");
+        PdfOutput report = new BasicMergedPdfOutput("report", sections(30));
+        try (RenderAdmission.Permit interactive = admission.admit(section); RenderAdmission.Permit bulk = admission.admit(report)) {
+            assertThat(interactive.getLane()).isEqualTo(RenderAdmission.Lane.INTERACTIVE);
+            assertThat(bulk.getLane()).isEqualTo(RenderAdmission.Lane.BULK);
+
+            // When: The documents are rendered into byte arrays, like the batch and the async renderers do
+            byte[] pdf = pdfResponseConverter.renderToByteArray(section);
+            byte[] merged = pdfResponseConverter.renderToByteArray(report);
+
+            // Then: They are rendered, bounded by the executors of the renderers, not by the admission control
+            assertThat(pdf).isNotEmpty();
+            assertThat(merged).isNotEmpty();
+            assertThat(admission.getRejectedCount(RenderAdmission.Lane.INTERACTIVE)).isZero();
+            assertThat(admission.getRejectedCount(RenderAdmission.Lane.BULK)).isZero();
+        }
+    }
+
+    private byte[] render(PdfOutput output) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        pdfResponseConverter.writeToOutput(output, createHttpOutputMessage(outputStream));
+        return outputStream.toByteArray();
+    }
+
+    private byte[] renderUnchecked(PdfOutput output) {
+        try {
+            return render(output);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Helper method to create a mock HttpOutputMessage for testing.
+     */
+    private HttpOutputMessage createHttpOutputMessage(ByteArrayOutputStream outputStream) {
+        return new HttpOutputMessage() {
+            private final HttpHeaders headers = new HttpHeaders();
+
+            @Override
+            public OutputStream getBody() {
+                return outputStream;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        };
+    }
+
+    private static List<ReportSection> sections(int count) {
+        List<ReportSection> sections = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            sections.add(new ReportSection(String.valueOf(i), "Section " + i, "Content of section " + i));
+        }
+        return sections;
+    }
+
+    /**
+     * Section, which blocks the render thread until it is released.
+     */
+    private static class BlockingSection extends ReportSection {
+        private final CountDownLatch started;
+        private final CountDownLatch release;
+
+        BlockingSection(CountDownLatch started, CountDownLatch release) {
+            super("0", "Blocking", "Blocks the render thread");
+            this.started = started;
+            this.release = release;
+        }
+
+        @Override
+        public void init(Context thymeleafContext) {
+            started.countDown();
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.init(thymeleafContext);
+        }
+    }
+}
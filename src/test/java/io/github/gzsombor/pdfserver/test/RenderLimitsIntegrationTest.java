@@ -0,0 +1,140 @@
+package io.github.gzsombor.pdfserver.test;
+
+import io.github.gzsombor.pdfserver.impl.RenderLimitExceededException;
+import io.github.gzsombor.pdfserver.impl.RenderLimits;
+import io.github.gzsombor.pdfserver.test.config.TestConfig;
+import io.github.gzsombor.pdfserver.test.helper.TestPdfResponseConverter;
+import io.github.gzsombor.pdfserver.test.model.InvoiceData;
+import io.github.gzsombor.pdfserver.test.model.InvoiceData.InvoiceItem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Integration tests for stopping the rendering of documents, which exceed the
+ * render limits.
+ */
+@SpringJUnitConfig(TestConfig.class)
+public class RenderLimitsIntegrationTest {
+
+    @Autowired
+    private SpringTemplateEngine templateEngine;
+
+    private TestPdfResponseConverter limitedConverter;
+
+    private RenderLimits limits;
+
+    @BeforeEach
+    public void setUp() {
+        limits = new RenderLimits();
+        limitedConverter = new TestPdfResponseConverter();
+        limitedConverter.setTemplateEngine(templateEngine);
+        limitedConverter.setRenderLimits(limits);
+    }
+
+    @Test
+    public void testDocumentWithinLimitsIsRendered() throws Exception {
+        // Given: Generous limits
+        limits.setMaxHtmlSize(1_000_000);
+        limits.setMaxNodeCount(10_000);
+        limits.setMaxPages(10);
+        limits.setMaxRenderTime(Duration.ofMinutes(1));
+
+        // When: A small invoice is rendered
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        limitedConverter.writeToOutput(createInvoice(3), createHttpOutputMessage(outputStream));
+
+        // Then: The PDF is generated
+        assertThat(outputStream.toByteArray()).isNotEmpty();
+    }
+
+    @Test
+    public void testTooLargeHtmlIsStoppedDuringTemplateProcessing() {
+        // Given: A limit on the generated HTML
+        limits.setMaxHtmlSize(20_000);
+
+        // When/Then: An invoice with thousands of rows is stopped
+        assertThatThrownBy(() -> limitedConverter.writeToOutput(createInvoice(5000), createHttpOutputMessage(new ByteArrayOutputStream())))
+            .isInstanceOf(HttpMessageNotWritableException.class)
+            .hasCauseInstanceOf(RenderLimitExceededException.class)
+            .hasMessageContaining("larger than 20000 characters");
+    }
+
+    @Test
+    public void testTooManyNodesAreRejectedBeforeLayout() {
+        // Given: A limit on the DOM size
+        limits.setMaxNodeCount(1000);
+
+        // When/Then: A large invoice is rejected
+        assertThatThrownBy(() -> limitedConverter.writeToOutput(createInvoice(500), createHttpOutputMessage(new ByteArrayOutputStream())))
+            .isInstanceOf(HttpMessageNotWritableException.class)
+            .hasCauseInstanceOf(RenderLimitExceededException.class)
+            .hasMessageContaining("more than 1000 nodes");
+    }
+
+    @Test
+    public void testTooManyPagesAreStoppedDuringLayout() {
+        // Given: A limit on the page count
+        limits.setMaxPages(3);
+
+        // When/Then: An invoice of many pages is stopped
+        assertThatThrownBy(() -> limitedConverter.writeToOutput(createInvoice(1000), createHttpOutputMessage(new ByteArrayOutputStream())))
+            .isInstanceOf(HttpMessageNotWritableException.class)
+            .hasCauseInstanceOf(RenderLimitExceededException.class)
+            .hasMessageContaining("more than 3 pages");
+    }
+
+    @Test
+    public void testSlowRenderingIsStopped() {
+        // Given: A render time, which can't be met
+        limits.setMaxRenderTime(Duration.ofNanos(1));
+
+        // When/Then: The rendering is stopped
+        assertThatThrownBy(() -> limitedConverter.writeToOutput(createInvoice(100), createHttpOutputMessage(new ByteArrayOutputStream())))
+            .isInstanceOf(HttpMessageNotWritableException.class)
+            .hasCauseInstanceOf(RenderLimitExceededException.class)
+            .hasMessageContaining("takes longer than");
+    }
+
+    private InvoiceData createInvoice(int itemCount) {
+        List<InvoiceItem> items = new ArrayList<>();
+        for (int i = 1; i <= itemCount; i++) {
+            items.add(new InvoiceItem("Item " + i, 1, 10.00));
+        }
+        return new InvoiceData("INV-LIMITS", LocalDate.of(2025, 11, 18), "Acme Corporation", "123 Main Street", items);
+    }
+
+    /**
+     * Helper method to create a mock HttpOutputMessage for testing.
+     */
+    private HttpOutputMessage createHttpOutputMessage(ByteArrayOutputStream outputStream) {
+        return new HttpOutputMessage() {
+            private final HttpHeaders headers = new HttpHeaders();
+
+            @Override
+            public OutputStream getBody() {
+                return outputStream;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        };
+    }
+}
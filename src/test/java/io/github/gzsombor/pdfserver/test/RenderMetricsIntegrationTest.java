@@ -0,0 +1,114 @@
+package io.github.gzsombor.pdfserver.test;
+
+import io.github.gzsombor.pdfserver.api.BasicMergedPdfOutput;
+import io.github.gzsombor.pdfserver.api.PdfOutput;
+import io.github.gzsombor.pdfserver.impl.MergeStrategy;
+import io.github.gzsombor.pdfserver.impl.MicrometerRenderMetrics;
+import io.github.gzsombor.pdfserver.impl.RenderMetrics;
+import io.github.gzsombor.pdfserver.test.config.TestConfig;
+import io.github.gzsombor.pdfserver.test.helper.TestPdfResponseConverter;
+import io.github.gzsombor.pdfserver.test.model.InvoiceData;
+import io.github.gzsombor.pdfserver.test.model.InvoiceData.InvoiceItem;
+import io.github.gzsombor.pdfserver.test.model.ReportSection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for recording the render metrics into Micrometer.
+ */
+@SpringJUnitConfig(TestConfig.class)
+public class RenderMetricsIntegrationTest {
+
+    @Autowired
+    private SpringTemplateEngine templateEngine;
+
+    private SimpleMeterRegistry registry;
+
+    private TestPdfResponseConverter measuredConverter;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        measuredConverter = new TestPdfResponseConverter();
+        measuredConverter.setTemplateEngine(templateEngine);
+        measuredConverter.setMetrics(new MicrometerRenderMetrics(registry));
+    }
+
+    @Test
+    public void testEveryStageIsRecordedByTemplate() throws Exception {
+        // Given: An invoice
+        InvoiceData invoiceData = new InvoiceData("INV-METRICS", LocalDate.of(2025, 11, 18), "Acme Corporation",
+            "123 Main Street", Arrays.asList(new InvoiceItem("Consulting", 10, 100.00)));
+
+        // When: Generate PDF
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        measuredConverter.writeToOutput(invoiceData, createHttpOutputMessage(outputStream));
+
+        // Then: Every stage is timed, tagged with the template name
+        for (String stage : Arrays.asList("template", "parse", "layout", "pdf_write")) {
+            assertThat(registry.get("pdfserver.render").tag("stage", stage).tag("template", "invoice").timer().count())
+                .as(stage).isEqualTo(1);
+        }
+        assertThat(registry.get("pdfserver.output.size").tag("template", "invoice").summary().totalAmount())
+            .isEqualTo(outputStream.size());
+        assertThat(registry.get("pdfserver.pages").tag("template", "invoice").summary().totalAmount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testMergedDocumentRecordsFragments() throws Exception {
+        // Given: A merged report of 5 sections, which are concatenated
+        List<PdfOutput> sections = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            sections.add(new ReportSection(String.valueOf(i), "Title " + i, "Content " + i));
+        }
+        measuredConverter.setMergeStrategy(MergeStrategy.CONCATENATE);
+
+        // When: Generate merged PDF
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        measuredConverter.writeToOutput(new BasicMergedPdfOutput("report", sections), createHttpOutputMessage(outputStream));
+
+        // Then: The parts are measured with their own template, the merge as a whole
+        assertThat(registry.get("pdfserver.render").tag("stage", "template").tag("template", "report-section").timer().count())
+            .isEqualTo(5);
+        assertThat(registry.get("pdfserver.render").tag("stage", "merge").tag("template", RenderMetrics.MERGED).timer().count())
+            .isEqualTo(1);
+        assertThat(registry.get("pdfserver.fragments").tag("template", RenderMetrics.MERGED).summary().totalAmount())
+            .isEqualTo(5);
+        assertThat(registry.get("pdfserver.output.size").tag("template", RenderMetrics.MERGED).summary().totalAmount())
+            .isEqualTo(outputStream.size());
+    }
+
+    /**
+     * Helper method to create a mock HttpOutputMessage for testing.
+     */
+    private HttpOutputMessage createHttpOutputMessage(ByteArrayOutputStream outputStream) {
+        return new HttpOutputMessage() {
+            private final HttpHeaders headers = new HttpHeaders();
+
+            @Override
+            public OutputStream getBody() {
+                return outputStream;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        };
+    }
+}
@@ -0,0 +1,130 @@
+package io.github.gzsombor.pdfserver.test;
+
+import io.github.gzsombor.pdfserver.impl.RenderWarmup;
+import io.github.gzsombor.pdfserver.impl.RendererPool;
+import io.github.gzsombor.pdfserver.impl.ResourceCache;
+import io.github.gzsombor.pdfserver.impl.TemplateManifestBuilder;
+import io.github.gzsombor.pdfserver.test.helper.TestPdfResponseConverter;
+import io.github.gzsombor.pdfserver.test.model.ReportSection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.thymeleaf.cache.TemplateCacheKey;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for warming up the converter during the startup.
+ */
+public class RenderWarmupIntegrationTest {
+
+    private SpringTemplateEngine engine;
+
+    private TestPdfResponseConverter converter;
+
+    @BeforeEach
+    public void setUp() {
+        engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(classpathResolver("templates/"));
+        converter = new TestPdfResponseConverter();
+        converter.setTemplateEngine(engine);
+    }
+
+    @Test
+    public void testTemplatesAreParsedIntoTheCache() {
+        // Given: A warm-up with template names only
+        RenderWarmup warmup = new RenderWarmup(converter);
+        warmup.setTemplateNames(Arrays.asList("invoice", "report-section"));
+
+        // When: The application starts
+        warmup.afterSingletonsInstantiated();
+
+        // Then: The templates are in the cache, even without variables
+        assertThat(cachedTemplates()).contains("invoice", "report-section");
+    }
+
+    @Test
+    public void testSamplesLoadFontsAndResources() {
+        // Given: A pooled converter with a resource cache, and a sample document
+        ResourceCache resourceCache = new ResourceCache(10_000_000);
+        RendererPool pool = new RendererPool(2);
+        pool.setResourceCache(resourceCache);
+        converter.setRendererPool(pool);
+        RenderWarmup warmup = new RenderWarmup(converter);
+        warmup.setSamples(Arrays.asList(new ReportSection("1", "Branded", "Warm-up") {
+            @Override
+            public String getTemplateName() {
+                return "branded-section";
+            }
+        }));
+        warmup.setIterations(2);
+        warmup.setPrestartedRenderers(2);
+
+        // When: The application starts
+        warmup.warmUp();
+
+        // Then: The renderers are started, and the stylesheet and the logo are cached
+        assertThat(pool.getIdleCount()).isEqualTo(2);
+        assertThat(resourceCache.getHitCount()).isPositive();
+        assertThat(cachedTemplates()).contains("branded-section");
+    }
+
+    @Test
+    public void testManifestTemplatesAndResourcesAreLoaded() throws Exception {
+        // Given: A converter with a resource cache, and the manifest of the templates
+        ResourceCache resourceCache = new ResourceCache(10_000_000);
+        converter.setResourceCache(resourceCache);
+        TemplateManifestBuilder builder = new TemplateManifestBuilder(Paths.get("src/test/resources/templates"));
+        builder.setResourceDirectory(Paths.get("src/test/resources"));
+        converter.setTemplateManifest(builder.build());
+        RenderWarmup warmup = new RenderWarmup(converter);
+
+        // When: The application starts
+        warmup.warmUp();
+
+        // Then: All the templates are parsed, and the stylesheet and the logo are loaded
+        assertThat(cachedTemplates()).contains("invoice", "report-section", "branded-section", "numbered-section");
+        assertThat(resourceCache.getSize()).isPositive();
+        assertThat(resourceCache.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testManifestWithPathPrefix() throws Exception {
+        // Given: A converter with a path prefix, and the manifest built with the same prefix
+        TemplateManifestBuilder builder = new TemplateManifestBuilder(Paths.get("src/test/resources"));
+        builder.setPathPrefix("templates/");
+        converter.setPathPrefix("templates/");
+        converter.setTemplateManifest(builder.build());
+        engine.setTemplateResolver(classpathResolver(""));
+        RenderWarmup warmup = new RenderWarmup(converter);
+
+        // When: The application starts
+        warmup.warmUp();
+
+        // Then: The templates are parsed with the prefix only once
+        assertThat(builder.getErrors()).isEmpty();
+        assertThat(cachedTemplates()).contains("templates/invoice", "templates/report-section").noneMatch(name -> name.startsWith("templates/templates/"));
+    }
+
+    private static ClassLoaderTemplateResolver classpathResolver(String prefix) {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix(prefix);
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode("HTML");
+        resolver.setCharacterEncoding("UTF-8");
+        resolver.setCacheable(true);
+        return resolver;
+    }
+
+    private List<String> cachedTemplates() {
+        return engine.getCacheManager().getTemplateCache().keySet().stream()
+            .map(TemplateCacheKey::getTemplate)
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,172 @@
+package io.github.gzsombor.pdfserver.test;
+
+import io.github.gzsombor.pdfserver.impl.DirectBufferPool;
+import io.github.gzsombor.pdfserver.impl.RenderLimitExceededException;
+import io.github.gzsombor.pdfserver.impl.RenderLimits;
+import io.github.gzsombor.pdfserver.test.config.TestConfig;
+import io.github.gzsombor.pdfserver.test.helper.TestPdfResponseConverter;
+import io.github.gzsombor.pdfserver.test.model.InvoiceData;
+import io.github.gzsombor.pdfserver.test.model.InvoiceData.InvoiceItem;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Integration tests for buffering the generated PDF before the response is
+ * committed.
+ */
+@SpringJUnitConfig(TestConfig.class)
+public class ResponseBufferingIntegrationTest {
+
+    @Autowired
+    private SpringTemplateEngine templateEngine;
+
+    @TempDir
+    Path tempDir;
+
+    private TestPdfResponseConverter bufferingConverter;
+
+    @BeforeEach
+    public void setUp() {
+        bufferingConverter = new TestPdfResponseConverter();
+        bufferingConverter.setTemplateEngine(templateEngine);
+    }
+
+    @Test
+    public void testBufferedDocumentHasContentLength() throws Exception {
+        // Given: A small invoice
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        HttpOutputMessage outputMessage = createHttpOutputMessage(outputStream);
+
+        // When: Generate PDF
+        bufferingConverter.writeToOutput(createInvoice(3), outputMessage);
+
+        // Then: The exact length is sent
+        assertThat(outputMessage.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_PDF);
+        assertThat(outputMessage.getHeaders().getContentLength()).isEqualTo(outputStream.size());
+    }
+
+    @Test
+    public void testLargeDocumentIsStreamed() throws Exception {
+        // Given: A buffer, which is smaller than the document
+        bufferingConverter.setResponseBufferSize(1000);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        HttpOutputMessage outputMessage = createHttpOutputMessage(outputStream);
+
+        // When: Generate PDF
+        bufferingConverter.writeToOutput(createInvoice(3), outputMessage);
+
+        // Then: The whole document is written, without a length
+        assertThat(outputMessage.getHeaders().getContentLength()).isEqualTo(-1);
+        try (PDDocument document = Loader.loadPDF(outputStream.toByteArray())) {
+            assertThat(document.getNumberOfPages()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void testFailedDocumentIsNotCommitted() {
+        // Given: A document, which fails during the layout
+        RenderLimits limits = new RenderLimits();
+        limits.setMaxPages(1);
+        bufferingConverter.setRenderLimits(limits);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        HttpOutputMessage outputMessage = createHttpOutputMessage(outputStream);
+
+        // When/Then: The failure is reported, and nothing is written into the response
+        assertThatThrownBy(() -> bufferingConverter.writeToOutput(createInvoice(200), outputMessage))
+            .isInstanceOf(HttpMessageNotWritableException.class)
+            .hasCauseInstanceOf(RenderLimitExceededException.class);
+        assertThat(outputMessage.getHeaders().getContentType()).isNull();
+        assertThat(outputStream.size()).isZero();
+    }
+
+    @Test
+    public void testLargeDocumentIsSpilledToDisk() throws Exception {
+        // Given: Small direct buffers, and a spill directory
+        DirectBufferPool pool = new DirectBufferPool(512, 4);
+        bufferingConverter.setBufferPool(pool);
+        bufferingConverter.setResponseBufferSize(1000);
+        bufferingConverter.setSpillDirectory(tempDir);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        HttpOutputMessage outputMessage = createHttpOutputMessage(outputStream);
+
+        // When: Generate PDF
+        bufferingConverter.writeToOutput(createInvoice(3), outputMessage);
+
+        // Then: The whole document is sent with its length, and the temporary file is deleted
+        assertThat(outputStream.size()).isGreaterThan(1000);
+        assertThat(outputMessage.getHeaders().getContentLength()).isEqualTo(outputStream.size());
+        try (PDDocument document = Loader.loadPDF(outputStream.toByteArray())) {
+            assertThat(document.getNumberOfPages()).isEqualTo(1);
+        }
+        try (var files = Files.list(tempDir)) {
+            assertThat(files).isEmpty();
+        }
+        assertThat(pool.getIdleCount()).isPositive();
+    }
+
+    @Test
+    public void testSpillingFailedDocumentIsNotCommitted() {
+        // Given: A spill directory, and a document, which fails during the layout
+        bufferingConverter.setResponseBufferSize(1000);
+        bufferingConverter.setSpillDirectory(tempDir);
+        RenderLimits limits = new RenderLimits();
+        limits.setMaxPages(1);
+        bufferingConverter.setRenderLimits(limits);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        HttpOutputMessage outputMessage = createHttpOutputMessage(outputStream);
+
+        // When/Then: The failure is reported, and nothing is written into the response
+        assertThatThrownBy(() -> bufferingConverter.writeToOutput(createInvoice(200), outputMessage))
+            .isInstanceOf(HttpMessageNotWritableException.class);
+        assertThat(outputMessage.getHeaders().getContentType()).isNull();
+        assertThat(outputStream.size()).isZero();
+    }
+
+    private InvoiceData createInvoice(int itemCount) {
+        List<InvoiceItem> items = new ArrayList<>();
+        for (int i = 1; i <= itemCount; i++) {
+            items.add(new InvoiceItem("Item " + i, 1, 10.00));
+        }
+        return new InvoiceData("INV-BUFFER", LocalDate.of(2025, 11, 18), "Acme Corporation", "123 Main Street", items);
+    }
+
+    /**
+     * Helper method to create a mock HttpOutputMessage for testing.
+     */
+    private HttpOutputMessage createHttpOutputMessage(ByteArrayOutputStream outputStream) {
+        return new HttpOutputMessage() {
+            private final HttpHeaders headers = new HttpHeaders();
+
+            @Override
+            public OutputStream getBody() {
+                return outputStream;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        };
+    }
+}
@@ -0,0 +1,130 @@
+package io.github.gzsombor.pdfserver.test;
+
+import io.github.gzsombor.pdfserver.impl.TemplateManifest;
+import io.github.gzsombor.pdfserver.impl.TemplateManifestBuilder;
+import io.github.gzsombor.pdfserver.test.helper.TestPdfResponseConverter;
+import io.github.gzsombor.pdfserver.test.model.ReportSection;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests validating the templates, and building the template manifest.
+ */
+public class TemplateManifestBuilderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testValidTemplatesAreListedWithTheirDependencies() throws Exception {
+        // Given: The templates of the tests
+        TemplateManifestBuilder builder = new TemplateManifestBuilder(Paths.get("src/test/resources/templates"));
+        builder.setResourceDirectory(Paths.get("src/test/resources"));
+
+        // When: Build the manifest, and read it back
+        TemplateManifest manifest = builder.build();
+        StringWriter writer = new StringWriter();
+        manifest.write(writer);
+        TemplateManifest loaded = TemplateManifest.read(new StringReader(writer.toString()));
+
+        // Then: Every template is valid, with the stylesheet and the image of the branded section
+        assertThat(builder.getErrors()).isEmpty();
+        assertThat(loaded.getTemplateNames()).contains("invoice", "report-section", "branded-section");
+        assertThat(loaded.get("branded-section").getDependencies())
+            .containsExactly("classpath:static/corporate.css", "classpath:static/logo.png");
+        assertThat(loaded.getHash("invoice")).hasSize(64).isEqualTo(manifest.getHash("invoice"));
+    }
+
+    @Test
+    public void testBrokenTemplatesAreReported() throws Exception {
+        // Given: A template, which is not XHTML, one with a broken expression, and one with a missing stylesheet
+        Files.writeString(tempDir.resolve("unclosed.html"), "<html><body><p>Unclosed</body></html>");
+        Files.writeString(tempDir.resolve("expression.html"), "<html><body><p th:text=\"${record.}\">x</p></body></html>");
+        Files.writeString(tempDir.resolve("missing.html"),
+            "<html><head><link rel=\"stylesheet\" href=\"classpath:missing.css\"/></head><body/></html>");
+        Files.writeString(tempDir.resolve("valid.html"), "<html><body><p th:text=\"${record.title}\">x</p></body></html>");
+
+        // When: Build the manifest
+        TemplateManifestBuilder builder = new TemplateManifestBuilder(tempDir);
+        TemplateManifest manifest = builder.build();
+
+        // Then: Only the valid template is listed, and every problem is reported
+        assertThat(manifest.getTemplateNames()).containsExactly("valid");
+        assertThat(builder.getErrors()).hasSize(3);
+        assertThat(builder.getErrors()).anySatisfy(error -> assertThat(error).startsWith("unclosed : not well formed XHTML"));
+        assertThat(builder.getErrors()).anySatisfy(error -> assertThat(error).startsWith("expression : "));
+        assertThat(builder.getErrors()).anySatisfy(error -> assertThat(error).startsWith("missing : missing resource classpath:missing.css"));
+    }
+
+    @Test
+    public void testMainFailsTheBuildOnBrokenTemplates() throws Exception {
+        // Given: A template directory with a broken template
+        Path templates = Files.createDirectory(tempDir.resolve("templates"));
+        Files.writeString(templates.resolve("unclosed.html"), "<html><body><p>Unclosed</body></html>");
+        Path manifestFile = tempDir.resolve("manifest/template-manifest.txt");
+
+        // When: The builder is run from the build
+        // Then: It fails with the problems, instead of exiting, and writes no manifest
+        assertThatThrownBy(() -> TemplateManifestBuilder.main(new String[] { templates.toString(), tempDir.toString(), manifestFile.toString() }))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("unclosed : not well formed XHTML");
+        assertThat(manifestFile).doesNotExist();
+    }
+
+    @Test
+    public void testPathPrefixIsLeftOutOfTheNames() throws Exception {
+        // Given: PDF templates under the path prefix, including a fragment with its full name, and an other view
+        Path pdf = Files.createDirectories(tempDir.resolve("pdf"));
+        Files.writeString(pdf.resolve("section.html"),
+            "<html><body><p>Section</p><div th:replace=\"~{pdf/common :: footer}\">footer</div></body></html>");
+        Files.writeString(pdf.resolve("common.html"), "<html><body><div th:fragment=\"footer\">Footer</div></body></html>");
+        Files.writeString(Files.createDirectories(tempDir.resolve("web")).resolve("page.html"), "<html><body><p>Not a PDF</body></html>");
+
+        // When: Build the manifest with the path prefix of the converter
+        TemplateManifestBuilder builder = new TemplateManifestBuilder(tempDir);
+        builder.setPathPrefix("pdf/");
+        TemplateManifest manifest = builder.build();
+
+        // Then: The templates under the prefix are named like the converter names them
+        assertThat(builder.getErrors()).isEmpty();
+        assertThat(manifest.getTemplateNames()).containsExactly("common", "section");
+
+        // And: The converter with the same prefix finds the hash of its templates
+        TestPdfResponseConverter converter = new TestPdfResponseConverter();
+        converter.setPathPrefix("pdf/");
+        converter.setTemplateManifest(manifest);
+        ReportSection section = new ReportSection("1", "Section", "Content") {
+            @Override
+            public String getTemplateName() {
+                return "section";
+            }
+        };
+        assertThat(converter.keyOfTemplate(section)).isEqualTo("pdf/section@" + manifest.getHash("section"));
+    }
+
+    @Test
+    public void testMainTakesThePathPrefix() throws Exception {
+        // Given: A valid template under the path prefix
+        Path templates = Files.createDirectories(tempDir.resolve("templates/pdf"));
+        Files.writeString(templates.resolve("valid.html"), "<html><body><p>Valid</p></body></html>");
+        Path manifestFile = tempDir.resolve("manifest/template-manifest.txt");
+
+        // When: The builder is run from the build, with the path prefix
+        TemplateManifestBuilder.main(new String[] { tempDir.resolve("templates").toString(), tempDir.toString(), manifestFile.toString(), "pdf/" });
+
+        // Then: The manifest is written, with the name used by the converter
+        try (Reader reader = Files.newBufferedReader(manifestFile)) {
+            assertThat(TemplateManifest.read(reader).getTemplateNames()).containsExactly("valid");
+        }
+    }
+}
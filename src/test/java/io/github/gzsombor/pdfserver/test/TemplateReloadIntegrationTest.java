@@ -0,0 +1,148 @@
+package io.github.gzsombor.pdfserver.test;
+
+import io.github.gzsombor.pdfserver.test.helper.TestHtmlMessageConverter;
+import io.github.gzsombor.pdfserver.test.model.ReportSection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.thymeleaf.cache.TemplateCacheKey;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.FileTemplateResolver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for reloading the changed templates, with a caching template resolver.
+ */
+public class TemplateReloadIntegrationTest {
+
+    @TempDir
+    Path templateDir;
+
+    private SpringTemplateEngine engine;
+
+    private TestHtmlMessageConverter htmlMessageConverter;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        FileTemplateResolver resolver = new FileTemplateResolver();
+        resolver.setPrefix(templateDir.toString() + "/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode("HTML");
+        resolver.setCharacterEncoding("UTF-8");
+        resolver.setCacheable(true);
+
+        engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+
+        htmlMessageConverter = new TestHtmlMessageConverter();
+        htmlMessageConverter.setTemplateEngine(engine);
+        htmlMessageConverter.setAlwaysReload(true);
+
+        writeTemplate("report-section", "first version");
+        writeTemplate("other", "other version");
+    }
+
+    @Test
+    public void testChangedTemplateIsReloaded() throws Exception {
+        // Given: Templates rendered once
+        htmlMessageConverter.setReloadCheckInterval(Duration.ZERO);
+        assertThat(render("report-section")).contains("first version");
+        assertThat(render("other")).contains("other version");
+
+        // When: One of the template sources is changed
+        writeTemplate("report-section", "second version");
+
+        // Then: The changed template is reloaded, the other one stays in the cache
+        assertThat(render("report-section")).contains("second version");
+        assertThat(cachedTemplates()).contains("other");
+        assertThat(render("other")).contains("other version");
+    }
+
+    @Test
+    public void testTemplateIsCheckedOnlyOncePerInterval() throws Exception {
+        // Given: A template rendered once, with a long check interval
+        htmlMessageConverter.setReloadCheckInterval(Duration.ofHours(1));
+        assertThat(render("report-section")).contains("first version");
+
+        // When: The template source is changed
+        writeTemplate("report-section", "second version");
+
+        // Then: The cached version is used until the next check
+        assertThat(render("report-section")).contains("first version");
+    }
+
+    @Test
+    public void testChangedFragmentIsReloaded() throws Exception {
+        // Given: A template including a fragment, rendered once
+        htmlMessageConverter.setReloadCheckInterval(Duration.ZERO);
+        Files.writeString(templateDir.resolve("with-footer.html"),
+            "<html><body><p>main</p><div th:insert=\"~{footer :: footer}\">footer</div></body></html>", StandardCharsets.UTF_8);
+        writeFragment("first footer");
+        assertThat(render("with-footer")).contains("first footer");
+
+        // When: Only the included fragment is changed
+        writeFragment("second footer");
+
+        // Then: The fragment is reloaded, while the including template is unchanged
+        assertThat(render("with-footer")).contains("second footer").doesNotContain("first footer");
+    }
+
+    private List<String> cachedTemplates() {
+        return engine.getCacheManager().getTemplateCache().keySet().stream()
+            .map(TemplateCacheKey::getTemplate)
+            .collect(Collectors.toList());
+    }
+
+    private void writeTemplate(String name, String text) throws Exception {
+        Files.writeString(templateDir.resolve(name + ".html"),
+            "<html><body><p>" + text + " <span th:text=\"${title}\">title</span></p></body></html>", StandardCharsets.UTF_8);
+    }
+
+    private void writeFragment(String text) throws Exception {
+        Files.writeString(templateDir.resolve("footer.html"),
+            "<html><body><footer th:fragment=\"footer\">" + text + "</footer></body></html>", StandardCharsets.UTF_8);
+    }
+
+    private String render(String templateName) throws Exception {
+        ReportSection section = new ReportSection("1", "Reloaded", "Content") {
+            @Override
+            public String getTemplateName() {
+                return templateName;
+            }
+        };
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        htmlMessageConverter.writeToOutput(section, createHttpOutputMessage(outputStream));
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Helper method to create a mock HttpOutputMessage for testing.
+     */
+    private HttpOutputMessage createHttpOutputMessage(ByteArrayOutputStream outputStream) {
+        return new HttpOutputMessage() {
+            private final HttpHeaders headers = new HttpHeaders();
+
+            @Override
+            public OutputStream getBody() {
+                return outputStream;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        };
+    }
+}
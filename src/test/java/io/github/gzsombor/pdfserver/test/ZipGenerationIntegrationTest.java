@@ -0,0 +1,210 @@
+package io.github.gzsombor.pdfserver.test;
+
+import io.github.gzsombor.pdfserver.api.BasicMergedPdfOutput;
+import io.github.gzsombor.pdfserver.api.LocalizedPdfOutput;
+import io.github.gzsombor.pdfserver.api.MergedPdfOutput;
+import io.github.gzsombor.pdfserver.api.PdfContextConfigurer;
+import io.github.gzsombor.pdfserver.api.PdfOutput;
+import io.github.gzsombor.pdfserver.impl.PdfResponseConverter;
+import io.github.gzsombor.pdfserver.impl.ZipResponseConverter;
+import io.github.gzsombor.pdfserver.test.config.TestConfig;
+import io.github.gzsombor.pdfserver.test.helper.TestPdfResponseConverter;
+import io.github.gzsombor.pdfserver.test.helper.TestZipResponseConverter;
+import io.github.gzsombor.pdfserver.test.model.LocalizedReportSection;
+import io.github.gzsombor.pdfserver.test.model.ReportSection;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.thymeleaf.context.Context;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for writing the parts of a merged output into a ZIP
+ * archive.
+ */
+@SpringJUnitConfig(TestConfig.class)
+public class ZipGenerationIntegrationTest {
+
+    @Autowired
+    private TestZipResponseConverter zipResponseConverter;
+
+    @Autowired
+    private TestPdfResponseConverter pdfResponseConverter;
+
+    @Test
+    public void testEveryPartIsAnEntryInOrder() throws Exception {
+        // Given: Sections rendered concurrently, two of them with the same output name
+        List<PdfOutput> sections = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            sections.add(new ReportSection(String.valueOf(i), "Title " + i, "Content of part " + i + "."));
+        }
+        sections.add(new ReportSection("6", "Duplicate", "Content of the duplicate."));
+        MergedPdfOutput archive = new BasicMergedPdfOutput("reports", sections);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        zipResponseConverter.setRenderExecutor(executor);
+        zipResponseConverter.setRenderParallelism(3);
+
+        // When: Generate the archive
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        HttpOutputMessage outputMessage = createHttpOutputMessage(outputStream);
+        try {
+            zipResponseConverter.writeToOutput(archive, outputMessage);
+        } finally {
+            zipResponseConverter.setRenderExecutor(null);
+            executor.shutdown();
+        }
+
+        // Then: Every part is a separate PDF, in the original order
+        assertThat(outputMessage.getHeaders().getContentType()).isEqualTo(ZipResponseConverter.APPLICATION_ZIP);
+        assertThat(outputMessage.getHeaders().getFirst("Content-Disposition")).contains("reports.zip");
+        Map<String, byte[]> entries = readEntries(outputStream.toByteArray());
+        assertThat(entries.keySet()).containsExactly("section-1.pdf", "section-2.pdf", "section-3.pdf", "section-4.pdf",
+            "section-5.pdf", "section-6.pdf", "section-6-2.pdf");
+        try (PDDocument document = Loader.loadPDF(entries.get("section-6-2.pdf"))) {
+            assertThat(new PDFTextStripper().getText(document)).contains("Content of the duplicate.");
+        }
+    }
+
+    @Test
+    public void testOnlyMergedOutputIsSupported() {
+        assertThat(zipResponseConverter.canWrite(BasicMergedPdfOutput.class, ZipResponseConverter.APPLICATION_ZIP)).isTrue();
+        assertThat(zipResponseConverter.canWrite(ReportSection.class, ZipResponseConverter.APPLICATION_ZIP)).isFalse();
+    }
+
+    @Test
+    public void testEntriesShareTheLocaleAndVariablesOfTheArchive() throws Exception {
+        // Given: A French archive, which sets the date of the report for all the sections
+        TestZipResponseConverter converter = new TestZipResponseConverter();
+        converter.setPdfConverter(pdfResponseConverter);
+        List<PdfOutput> sections = List.of(
+            new LocalizedReportSection("1", "First", null),
+            new LocalizedReportSection("2", "Second", null)
+        );
+
+        // When: Generate the archive
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        converter.writeToOutput(new FrenchReport(sections), createHttpOutputMessage(outputStream));
+
+        // Then: Every entry is rendered with the locale and the variables of the archive
+        Map<String, byte[]> entries = readEntries(outputStream.toByteArray());
+        assertThat(entries).hasSize(2);
+        for (byte[] entry : entries.values()) {
+            try (PDDocument document = Loader.loadPDF(entry)) {
+                // the text stripper moves the closing dots before the spans
+                assertThat(new PDFTextStripper().getText(document)).containsPattern("Language: \\.?fr").containsPattern("Report date: \\.?2025-12-01");
+            }
+        }
+    }
+
+    @Test
+    public void testPartsWithoutOutputNameAreNamedByPosition() throws Exception {
+        // Given: An archive without a name, with parts without output names
+        List<PdfOutput> sections = List.of(
+            new ReportSection("1", "Named", "Content of the named part."),
+            new UnnamedSection("Content of the second part."),
+            new UnnamedSection("Content of the third part.")
+        );
+
+        // When: Generate the archive
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        HttpOutputMessage outputMessage = createHttpOutputMessage(outputStream);
+        zipResponseConverter.writeToOutput(new BasicMergedPdfOutput(null, sections), outputMessage);
+
+        // Then: The unnamed parts are named after their position in the archive
+        assertThat(outputMessage.getHeaders().getFirst("Content-Disposition")).isNull();
+        Map<String, byte[]> entries = readEntries(outputStream.toByteArray());
+        assertThat(entries.keySet()).containsExactly("section-1.pdf", "document-2.pdf", "document-3.pdf");
+        try (PDDocument document = Loader.loadPDF(entries.get("document-3.pdf"))) {
+            assertThat(new PDFTextStripper().getText(document)).contains("Content of the third part.");
+        }
+    }
+
+    @Test
+    public void testConverterIsNotAPdfConverter() {
+        // the archives are rendered by delegating to the PDF converter, so it stays the only one to inject
+        assertThat(PdfResponseConverter.class.isAssignableFrom(ZipResponseConverter.class)).isFalse();
+        assertThat(zipResponseConverter.getPdfConverter()).isSameAs(pdfResponseConverter);
+    }
+
+    private Map<String, byte[]> readEntries(byte[] content) throws Exception {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(content))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Merged report in French, which sets the date of the report for all the
+     * sections.
+     */
+    private static class FrenchReport extends BasicMergedPdfOutput implements LocalizedPdfOutput, PdfContextConfigurer {
+        FrenchReport(List<? extends PdfOutput> pdfs) {
+            super("french-report", pdfs);
+        }
+
+        @Override
+        public Locale getLocale() {
+            return Locale.FRENCH;
+        }
+
+        @Override
+        public void init(Context thymeleafContext) {
+            thymeleafContext.setVariable("reportDate", "2025-12-01");
+        }
+    }
+
+    /**
+     * Section without an output name.
+     */
+    private static class UnnamedSection extends ReportSection {
+        UnnamedSection(String content) {
+            super("0", "Unnamed", content);
+        }
+
+        @Override
+        public String getOutputName() {
+            return null;
+        }
+    }
+
+    /**
+     * Helper method to create a mock HttpOutputMessage for testing.
+     */
+    private HttpOutputMessage createHttpOutputMessage(ByteArrayOutputStream outputStream) {
+        return new HttpOutputMessage() {
+            private final HttpHeaders headers = new HttpHeaders();
+
+            @Override
+            public OutputStream getBody() {
+                return outputStream;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        };
+    }
+}
@@ -1,6 +1,8 @@
 package io.github.gzsombor.pdfserver.test.config;
 
+import io.github.gzsombor.pdfserver.test.helper.TestHtmlMessageConverter;
 import io.github.gzsombor.pdfserver.test.helper.TestPdfResponseConverter;
+import io.github.gzsombor.pdfserver.test.helper.TestZipResponseConverter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.thymeleaf.spring6.SpringTemplateEngine;
@@ -34,4 +36,14 @@ public class TestConfig {
     public TestPdfResponseConverter pdfResponseConverter() {
         return new TestPdfResponseConverter();
     }
+
+    @Bean
+    public TestHtmlMessageConverter htmlMessageConverter() {
+        return new TestHtmlMessageConverter();
+    }
+
+    @Bean
+    public TestZipResponseConverter zipResponseConverter() {
+        return new TestZipResponseConverter();
+    }
 }
@@ -3,6 +3,7 @@ package io.github.gzsombor.pdfserver.test.helper;
 import io.github.gzsombor.pdfserver.api.PdfOutput;
 import io.github.gzsombor.pdfserver.impl.PdfResponseConverter;
 import org.springframework.http.HttpOutputMessage;
+import org.w3c.dom.Document;
 
 import java.io.IOException;
 
@@ -18,4 +19,18 @@ public class TestPdfResponseConverter extends PdfResponseConverter {
     public void writeToOutput(PdfOutput pdfOutput, HttpOutputMessage outputMessage) throws IOException {
         writeInternal(pdfOutput, outputMessage);
     }
+
+    /**
+     * Public wrapper around the protected createDocument method for testing.
+     */
+    public Document buildDocument(PdfOutput pdfOutput) {
+        return createDocument(pdfOutput);
+    }
+
+    /**
+     * Public wrapper around the protected templateKey method for testing.
+     */
+    public String keyOfTemplate(PdfOutput pdfOutput) {
+        return templateKey(pdfOutput);
+    }
 }
@@ -0,0 +1,20 @@
+package io.github.gzsombor.pdfserver.test.model;
+
+import io.github.gzsombor.pdfserver.api.CacheablePdfOutput;
+
+/**
+ * Report section, which can be cached, using a version number as fingerprint.
+ */
+public class CacheableReportSection extends ReportSection implements CacheablePdfOutput {
+    private final String version;
+
+    public CacheableReportSection(String sectionNumber, String title, String content, String version) {
+        super(sectionNumber, title, content);
+        this.version = version;
+    }
+
+    @Override
+    public String getFingerprint() {
+        return getSectionNumber() + "-v" + version;
+    }
+}
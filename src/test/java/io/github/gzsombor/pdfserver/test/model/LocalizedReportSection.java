@@ -0,0 +1,27 @@
+package io.github.gzsombor.pdfserver.test.model;
+
+import io.github.gzsombor.pdfserver.api.LocalizedPdfOutput;
+
+import java.util.Locale;
+
+/**
+ * Report section, which can specify its own locale.
+ */
+public class LocalizedReportSection extends ReportSection implements LocalizedPdfOutput {
+    private final Locale locale;
+
+    public LocalizedReportSection(String sectionNumber, String title, Locale locale) {
+        super(sectionNumber, title, null);
+        this.locale = locale;
+    }
+
+    @Override
+    public String getTemplateName() {
+        return "localized-section";
+    }
+
+    @Override
+    public Locale getLocale() {
+        return locale;
+    }
+}
@@ -0,0 +1,16 @@
+package io.github.gzsombor.pdfserver.test.model;
+
+/**
+ * Report section on two pages, with the page number in the footer.
+ */
+public class NumberedReportSection extends ReportSection {
+
+    public NumberedReportSection(String sectionNumber, String title, String content) {
+        super(sectionNumber, title, content);
+    }
+
+    @Override
+    public String getTemplateName() {
+        return "numbered-section";
+    }
+}